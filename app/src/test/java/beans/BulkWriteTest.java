@@ -0,0 +1,92 @@
+package beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// insertInvoices() / insertIncomes() work the ids out from last_insert_rowid()
+// after each batch; reading the rows back by those ids has to find the very
+// rows that were inserted.
+class BulkWriteTest {
+
+    private static final long JAN_15 = 1_579_064_400_000L; // 2020-01-15 EST
+
+    private Database db;
+
+    @BeforeEach
+    void open() throws SQLException {
+        db = new Database("jdbc:sqlite::memory:", StorageProfile.defaults());
+        db.setBatchSize(7);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        db.close();
+    }
+
+    @Test
+    void batchIdsReadBackTheInsertedRows() throws SQLException {
+        // A deleted last row leaves a gap AUTOINCREMENT never fills
+        db.insertInvoice(invoice("single 0"));
+        Invoice gone = invoice("single 1");
+        db.insertInvoice(gone);
+        db.deleteInvoice(gone.getId());
+
+        List<Invoice> invoices = new ArrayList<>();
+        for (int i = 0; i < 20; i++) { // two full batches and a short one
+            Invoice invoice = invoice("bulk " + i);
+            invoice.setVendor("New vendor " + i % 3); // interned mid-batch
+            invoices.add(invoice);
+        }
+        int[] ids = db.insertInvoices(invoices);
+
+        assertEquals(20, ids.length);
+        assertTrue(ids[0] > gone.getId());
+        Map<Integer, Invoice> stored = new HashMap<>();
+        for (Invoice invoice : db.fetchInvoices(null, null, null, null)) {
+            stored.put(invoice.getId(), invoice);
+        }
+        assertEquals(21, stored.size());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], invoices.get(i).getId());
+            assertEquals("bulk " + i, stored.get(ids[i]).getDescription());
+            assertEquals("New vendor " + i % 3, stored.get(ids[i]).getVendor());
+        }
+    }
+
+    @Test
+    void batchIdsDriveUpdatesAndDeletes() throws SQLException {
+        List<Income> incomes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            incomes.add(new Income(0, "Globex", "Office", JAN_15 + i, "bulk " + i, Money.ofCents(10_000 + i), false, false));
+        }
+        int[] ids = db.insertIncomes(incomes);
+
+        for (Income income : incomes) {
+            income.setDescription("updated " + income.getDescription());
+        }
+        db.updateIncomes(incomes);
+        db.deleteIncomes(List.of(ids[0], ids[9]));
+
+        List<Income> stored = db.fetchIncomes(JAN_15, JAN_15 + 9);
+        assertEquals(8, stored.size());
+        for (Income income : stored) {
+            int i = (int) (income.getIssuedDate() - JAN_15);
+            assertEquals(ids[i], income.getId());
+            assertEquals("updated bulk " + i, income.getDescription());
+        }
+    }
+
+    private static Invoice invoice(String description) {
+        return new Invoice(0, "Acme", "Office", JAN_15, description, Money.ofCents(1999), true, false);
+    }
+}
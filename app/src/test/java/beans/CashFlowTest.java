@@ -0,0 +1,136 @@
+package beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// CashFlow runs over forEachEntry(), the one scan that merges both ledgers by
+// issued date; the balance figures are only right if that order is.
+class CashFlowTest {
+
+    private static final long START = 1_577_854_800_000L; // 2020-01-01 EST
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private Database db;
+
+    @BeforeEach
+    void open() throws SQLException {
+        db = new Database("jdbc:sqlite::memory:", StorageProfile.defaults());
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        db.close();
+    }
+
+    // Entered out of order, with invoices and incomes sharing days
+    @Test
+    void entriesComeBackMergedInDateOrder() throws SQLException {
+        List<Long> dates = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            dates.add(START + (i / 3) * DAY);
+        }
+        Collections.shuffle(dates, new Random(7));
+        List<Invoice> invoices = new ArrayList<>();
+        List<Income> incomes = new ArrayList<>();
+        for (int i = 0; i < dates.size(); i++) {
+            if (i % 2 == 0) {
+                invoices.add(new Invoice(0, "Acme", "Office", dates.get(i), "invoice " + i, Money.ofCents(100), true, false));
+            } else {
+                incomes.add(new Income(0, "Globex", "Office", dates.get(i), "income " + i, Money.ofCents(100), true, false));
+            }
+        }
+        db.insertEntries(invoices, incomes);
+
+        long from = START + 10 * DAY;
+        long to = START + 20 * DAY;
+        List<ExcelExporter.FinancialEntry> entries = new ArrayList<>();
+        db.forEachEntry(from, to, entries::add);
+
+        assertEquals(33, entries.size()); // days 10 to 20, three entries a day
+        for (int i = 1; i < entries.size(); i++) {
+            ExcelExporter.FinancialEntry a = entries.get(i - 1);
+            ExcelExporter.FinancialEntry b = entries.get(i);
+            assertTrue(a.getIssuedDate() < b.getIssuedDate()
+                    || a.getIssuedDate() == b.getIssuedDate() && id(a) <= id(b), a + " before " + b);
+        }
+        assertTrue(entries.stream().anyMatch(ExcelExporter.FinancialEntry::isIncome));
+        assertTrue(entries.stream().anyMatch(entry -> !entry.isIncome()));
+
+        // Both sides walk their issued_date index and are merged, never sorted
+        List<String> plan = db.explainEntries(from, to);
+        assertTrue(plan.stream().anyMatch(step -> step.contains("MERGE")), plan.toString());
+        assertFalse(plan.stream().anyMatch(step -> step.contains("USE TEMP B-TREE")), plan.toString());
+    }
+
+    // Tax-included amounts, so every entry moves the balance by exactly its amount
+    @Test
+    void lowestBalanceIsTheRunningLowPoint() throws SQLException {
+        db.insertIncome(income(START, 100_00));
+        db.insertInvoice(invoice(START + DAY, 250_00));
+        db.insertIncome(income(START + 2 * DAY, 300_00));
+        db.insertInvoice(invoice(START + 3 * DAY, 100_00));
+        // A refund is a negative income, and takes the balance lower than any invoice did
+        db.insertIncome(income(START + 4 * DAY, -250_00));
+        db.insertIncome(income(START + 5 * DAY, 500_00));
+
+        CashFlow flow = CashFlow.of(db, null, null);
+        assertEquals(650_00, flow.getIn().getTotal());
+        assertEquals(350_00, flow.getOut().getTotal());
+        assertEquals(300_00, flow.getNetCents());
+        assertEquals(300_00, flow.getBalanceCents());
+        assertEquals(-200_00, flow.getLowestBalanceCents());
+        assertEquals(START + 4 * DAY, flow.getLowestBalanceDate());
+
+        // The last day alone never goes below zero
+        CashFlow later = CashFlow.of(db, START + 5 * DAY, null);
+        assertEquals(0, later.getLowestBalanceCents());
+        assertEquals(0, later.getLowestBalanceDate());
+    }
+
+    // What is owed is tax collected on incomes minus tax paid on invoices
+    @Test
+    void remittanceIsCollectedMinusPaid() throws SQLException {
+        db.insertIncome(income(START, 1000_00));
+        db.insertInvoice(new Invoice(0, "Acme", "Office", START + DAY, "untaxed", Money.ofCents(5000_00), false, true));
+        CashFlow owed = CashFlow.of(db, null, null);
+        TaxCalculator.Breakdown collected = new TaxCalculator.Breakdown();
+        TaxCalculator.DEFAULT.compute(1000_00, true, false, collected);
+        assertTrue(owed.getGstRemittanceCents() > 0);
+        assertEquals(collected.getGst(), owed.getGstRemittanceCents());
+        assertEquals(collected.getQst(), owed.getQstRemittanceCents());
+        assertEquals(collected.getGst() + collected.getQst(), owed.getTaxRemittanceCents());
+
+        // Paying more tax than was collected means a refund is due: negative
+        db.insertInvoice(invoice(START + 2 * DAY, 3000_00));
+        CashFlow refund = CashFlow.of(db, null, null);
+        TaxCalculator.Breakdown paid = new TaxCalculator.Breakdown();
+        TaxCalculator.DEFAULT.compute(3000_00, true, false, paid);
+        assertTrue(refund.getGstRemittanceCents() < 0);
+        assertTrue(refund.getQstRemittanceCents() < 0);
+        assertEquals(collected.getGst() - paid.getGst(), refund.getGstRemittanceCents());
+        assertEquals(collected.getQst() - paid.getQst(), refund.getQstRemittanceCents());
+    }
+
+    private static int id(ExcelExporter.FinancialEntry entry) {
+        return entry.isIncome() ? ((Income) entry).getId() : ((Invoice) entry).getId();
+    }
+
+    private static Invoice invoice(long date, long cents) {
+        return new Invoice(0, "Acme", "Office", date, "invoice", Money.ofCents(cents), true, false);
+    }
+
+    private static Income income(long date, long cents) {
+        return new Income(0, "Globex", "Office", date, "income", Money.ofCents(cents), true, false);
+    }
+}
@@ -0,0 +1,120 @@
+package beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ChangeLogTest {
+
+    private static final long JAN_15 = 1_579_064_400_000L; // 2020-01-15 EST
+
+    private Database db;
+
+    @BeforeEach
+    void open() throws SQLException {
+        db = new Database("jdbc:sqlite::memory:", StorageProfile.defaults());
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        db.close();
+    }
+
+    @Test
+    void sinceZeroIsTheWholeLedger() throws SQLException {
+        Invoice a = invoice("Acme", "a", 100);
+        Income b = new Income(0, "Globex", "Office", JAN_15, "b", Money.ofCents(200), false, false);
+        db.insertInvoice(a);
+        db.insertIncome(b);
+
+        List<Database.Change> changes = changesSince(0);
+        assertEquals(2, changes.size());
+        assertEquals(a.getId(), changes.get(0).getId());
+        assertEquals(b.getId(), changes.get(1).getId());
+        assertTrue(changes.get(1).isIncome());
+        assertEquals(db.getLastChangeSeq(), changes.get(1).getSeq());
+    }
+
+    // Every entry comes once, as it is now, in the order of its latest change
+    @Test
+    void collapsesRepeatedChangesToTheLatest() throws SQLException {
+        Invoice a = invoice("Acme", "a", 100);
+        Invoice b = invoice("Acme", "b", 200);
+        db.insertInvoice(a);
+        db.insertInvoice(b);
+        long seq = db.getLastChangeSeq();
+
+        a.setAmount(Money.ofCents(150));
+        db.updateInvoice(a);
+        db.deleteInvoice(b.getId());
+        Invoice c = invoice("Acme", "c", 300);
+        db.insertInvoice(c);
+        a.setAmount(Money.ofCents(175));
+        db.updateInvoice(a);
+
+        List<Database.Change> changes = changesSince(seq);
+        assertEquals(3, changes.size());
+
+        assertEquals(b.getId(), changes.get(0).getId());
+        assertTrue(changes.get(0).isDeleted());
+        assertNull(changes.get(0).getEntry());
+
+        assertEquals(c.getId(), changes.get(1).getId());
+        assertEquals(300, changes.get(1).getEntry().getAmountCents());
+
+        assertEquals(a.getId(), changes.get(2).getId());
+        assertEquals(175, changes.get(2).getEntry().getAmountCents());
+        assertEquals(db.getLastChangeSeq(), changes.get(2).getSeq());
+
+        assertTrue(changesSince(db.getLastChangeSeq()).isEmpty());
+    }
+
+    @Test
+    void renamesLogEveryEntryThatShowsTheName() throws SQLException {
+        Invoice a = invoice("Acme", "a", 100);
+        Invoice b = invoice("Initech", "b", 200);
+        Invoice c = invoice("Acme", "c", 300);
+        db.insertInvoice(a);
+        db.insertInvoice(b);
+        db.insertInvoice(c);
+        long seq = db.getLastChangeSeq();
+
+        db.renameVendor("Acme", "Acme Corp");
+
+        List<Database.Change> changes = changesSince(seq);
+        assertEquals(2, changes.size());
+        assertEquals(a.getId(), changes.get(0).getId());
+        assertEquals(c.getId(), changes.get(1).getId());
+        assertEquals("Acme Corp", changes.get(1).getEntry().getParty());
+    }
+
+    @Test
+    void seqKeepsRisingAfterTheNewestEntryIsDeleted() throws SQLException {
+        Invoice a = invoice("Acme", "a", 100);
+        db.insertInvoice(a);
+        db.deleteInvoice(a.getId());
+        long seq = db.getLastChangeSeq();
+
+        db.insertInvoice(invoice("Acme", "b", 200));
+        assertTrue(db.getLastChangeSeq() > seq);
+        assertEquals(1, changesSince(seq).size());
+    }
+
+    private List<Database.Change> changesSince(long seq) throws SQLException {
+        List<Database.Change> changes = new ArrayList<>();
+        db.forEachChangeSince(seq, changes::add);
+        return changes;
+    }
+
+    private static Invoice invoice(String vendor, String description, long cents) {
+        return new Invoice(0, vendor, "Office", JAN_15, description, Money.ofCents(cents), true, false);
+    }
+}
@@ -0,0 +1,124 @@
+package beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CsvImporterTest {
+
+    @TempDir
+    Path dir;
+
+    private Database db;
+    private LookupCache lookups;
+
+    @BeforeEach
+    void open() throws SQLException {
+        db = new Database("jdbc:sqlite::memory:", StorageProfile.defaults());
+        db.insertVendor("Acme Corp");
+        db.insertClient("Globex");
+        db.insertCategory("Office");
+        lookups = new LookupCache(db);
+        lookups.load();
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        db.close();
+    }
+
+    // Without a type column the sign decides: money out is an invoice, money in an income
+    @Test
+    void importsABankStatement() throws Exception {
+        CsvImporter.Result result = importCsv(new CsvImporter(db, lookups).threads(1),
+                "\uFEFFDate,Amount,Payee,Category,Description",
+                "2020-01-15,-19.99,Acme Corp,Office,paper",
+                "2020-01-16,\"1,250.00\",Globex,Office,\"consulting, January\"",
+                "2020-01-17,(12.50),Acme Corp,Office,refund reversed",
+                "");
+
+        assertEquals(0, result.getRejected());
+        assertEquals(2, result.getInvoices());
+        assertEquals(1, result.getIncomes());
+
+        List<Invoice> invoices = db.fetchInvoices(null, null, null, null);
+        assertEquals(1999, invoices.get(0).getAmountCents());
+        assertEquals(1250, invoices.get(1).getAmountCents());
+        assertTrue(invoices.get(0).isTaxIncluded());
+
+        Income income = db.fetchIncomes(null, null).get(0);
+        assertEquals(125_000, income.getAmountCents());
+        assertEquals("consulting, January", income.getDescription());
+    }
+
+    // Names match the lists ignoring case and repeated spaces, and keep the list's spelling
+    @Test
+    void normalizesNamesToTheLists() throws Exception {
+        importCsv(new CsvImporter(db, lookups).delimiter(';').threads(1),
+                "date;type;vendor;category;amount;tax_included;non_taxable",
+                "2020-01-15;invoice;  acme   CORP ;OFFICE;10;no;yes");
+
+        Invoice invoice = db.fetchInvoices(null, null, null, null).get(0);
+        assertEquals("Acme Corp", invoice.getVendor());
+        assertEquals("Office", invoice.getCategory());
+        assertEquals(1000, invoice.getAmountCents());
+        assertEquals(false, invoice.isTaxIncluded());
+        assertEquals(true, invoice.isNonTaxable());
+        assertEquals(List.of("Acme Corp"), db.getAllVendors());
+    }
+
+    @Test
+    void rejectsBadLinesWithTheirReason() throws Exception {
+        CsvImporter.Result result = importCsv(new CsvImporter(db, lookups).threads(2),
+                "date,amount,party,category",
+                "2020-01-15,-5,Acme Corp,Office",
+                "15/01/2020,-5,Acme Corp,Office",
+                "2020-01-15,five,Acme Corp,Office",
+                "2020-01-15,-5,Initech,Office",
+                "2020-01-15,-5,Acme Corp,",
+                "2020-01-15,-5,\"Acme Corp,Office");
+
+        assertEquals(1, result.getInvoices());
+        assertEquals(5, result.getRejected());
+        List<String> rejects = Files.readAllLines(dir.resolve("rejects.csv"), StandardCharsets.UTF_8);
+        assertEquals("date,amount,party,category,reject_reason", rejects.get(0));
+        assertEquals(6, rejects.size());
+        assertTrue(rejects.get(1).startsWith("15/01/2020,-5,Acme Corp,Office,\"line 3: "));
+        assertTrue(rejects.get(3).endsWith("\"line 5: unknown vendor Initech\""));
+        assertTrue(rejects.get(4).endsWith("\"line 6: missing category\""));
+        assertTrue(rejects.get(5).endsWith("\"line 7: unterminated quote\""));
+    }
+
+    @Test
+    void createsMissingNamesWhenAsked() throws Exception {
+        CsvImporter.Result result = importCsv(new CsvImporter(db, lookups).createMissing(true)
+                        .defaultCategory("Office").datePattern("dd/MM/yyyy").threads(1),
+                "date,amount,payee",
+                "15/01/2020,-5,Initech",
+                "16/01/2020,-6,INITECH",
+                "17/01/2020,7,Hooli");
+
+        assertEquals(0, result.getRejected());
+        assertEquals(List.of("Acme Corp", "Initech"), db.getAllVendors());
+        assertEquals(List.of("Globex", "Hooli"), db.getAllClients());
+        assertEquals(2, db.fetchInvoices("Initech", "Office", null, null).size());
+    }
+
+    private CsvImporter.Result importCsv(CsvImporter importer, String... lines) throws IOException, SQLException {
+        File file = dir.resolve("import.csv").toFile();
+        Files.write(file.toPath(), List.of(lines), StandardCharsets.UTF_8);
+        return importer.importFile(file, dir.resolve("rejects.csv").toFile());
+    }
+}
@@ -0,0 +1,140 @@
+package beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// LedgerAnalytics works everything out in one pass over forEachEntryRow(); these
+// check the monthly figures, the deltas against the year before and the rankings.
+class LedgerAnalyticsTest {
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    // The first quarter of 2024
+    private static final long FROM = midnight(2024, 1, 1);
+    private static final long TO = midnight(2024, 4, 1) - 1;
+
+    private Database db;
+
+    @BeforeEach
+    void open() throws SQLException {
+        db = new Database("jdbc:sqlite::memory:", StorageProfile.defaults());
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        db.close();
+    }
+
+    // Tax-included amounts, so every entry moves the net by exactly its amount
+    @Test
+    void monthlyDeltasReachIntoTheYearBefore() throws SQLException {
+        db.insertIncome(income("Globex", "Office", date(2023, 1, 10), 500_00));
+        db.insertInvoice(invoice("Acme", "Office", date(2023, 12, 15), 200_00));
+        db.insertIncome(income("Globex", "Office", date(2024, 1, 5), 1000_00));
+        db.insertInvoice(invoice("Acme", "Office", date(2024, 1, 20), 300_00));
+        db.insertInvoice(invoice("Acme", "Office", date(2024, 2, 10), 400_00));
+        db.insertIncome(income("Globex", "Office", date(2024, 3, 31), 250_00));
+        db.insertIncome(income("Globex", "Office", date(2024, 4, 1), 999_00)); // after the period
+
+        LedgerAnalytics analytics = LedgerAnalytics.of(db, FROM, TO, LedgerAnalytics.DEFAULT_TOP);
+        assertEquals(3, analytics.getMonthCount());
+        assertEquals("2024-01", analytics.getMonthLabel(0));
+        assertEquals("2024-03", analytics.getMonthLabel(2));
+
+        assertEquals(1000_00, analytics.getInCents(0));
+        assertEquals(300_00, analytics.getOutCents(0));
+        assertEquals(700_00, analytics.getNetCents(0));
+        assertEquals(-400_00, analytics.getNetCents(1));
+        assertEquals(250_00, analytics.getNetCents(2));
+
+        // The balance starts at zero with the period, whatever came before
+        assertEquals(700_00, analytics.getClosingBalanceCents(0));
+        assertEquals(300_00, analytics.getClosingBalanceCents(1));
+        assertEquals(550_00, analytics.getClosingBalanceCents(2));
+
+        // January compares against December 2023 and January 2023, both before the period
+        assertEquals(700_00 + 200_00, analytics.getMonthOverMonthCents(0));
+        assertEquals(-400_00 - 700_00, analytics.getMonthOverMonthCents(1));
+        assertEquals(250_00 + 400_00, analytics.getMonthOverMonthCents(2));
+        assertEquals(700_00 - 500_00, analytics.getYearOverYearCents(0));
+        assertEquals(-400_00, analytics.getYearOverYearCents(1));
+        assertEquals(250_00, analytics.getYearOverYearCents(2));
+
+        // Collected minus paid, as in CashFlow
+        TaxCalculator.Breakdown collected = new TaxCalculator.Breakdown();
+        TaxCalculator.DEFAULT.compute(1000_00, true, false, collected);
+        TaxCalculator.Breakdown paid = new TaxCalculator.Breakdown();
+        TaxCalculator.DEFAULT.compute(300_00, true, false, paid);
+        assertEquals(collected.getGst() - paid.getGst(), analytics.getGstRemittanceCents(0));
+        assertEquals(collected.getQst() - paid.getQst(), analytics.getQstRemittanceCents(0));
+        assertTrue(analytics.getGstRemittanceCents(1) < 0);
+    }
+
+    // Largest total first, a tie to the party entered first, and no more than top of them
+    @Test
+    void topPartiesAndCategories() throws SQLException {
+        db.insertInvoice(invoice("Acme", "Office", date(2024, 1, 3), 200_00));
+        db.insertInvoice(invoice("Initech", "Travel", date(2024, 1, 4), 800_00));
+        db.insertInvoice(invoice("Hooli", "Office", date(2024, 2, 5), 100_00));
+        db.insertInvoice(invoice("Umbrella", "Office", date(2024, 2, 6), 500_00));
+        db.insertInvoice(invoice("Acme", "Travel", date(2024, 3, 7), 300_00));
+        // Only read for the deltas, never ranked
+        db.insertInvoice(invoice("Hooli", "Office", date(2023, 6, 1), 10_000_00));
+        db.insertIncome(income("Globex", "Office", date(2024, 1, 8), 100_00));
+        db.insertIncome(income("Soylent", "Travel", date(2024, 2, 9), 300_00));
+
+        LedgerAnalytics analytics = LedgerAnalytics.of(db, FROM, TO, 3);
+
+        List<LedgerAnalytics.Ranked> vendors = analytics.getTopVendors();
+        assertEquals(3, vendors.size());
+        assertRanked("Initech", 1, 800_00, vendors.get(0));
+        assertRanked("Acme", 2, 500_00, vendors.get(1));
+        assertRanked("Umbrella", 1, 500_00, vendors.get(2));
+
+        List<LedgerAnalytics.Ranked> clients = LedgerAnalytics.of(db, FROM, TO, 1).getTopClients();
+        assertEquals(1, clients.size());
+        assertRanked("Soylent", 1, 300_00, clients.get(0));
+
+        // Every category, largest in + out first, as { incomes, invoices }
+        List<LedgerAnalytics.Ranked[]> categories = analytics.getCategories();
+        assertEquals(2, categories.size());
+        assertRanked("Travel", 1, 300_00, categories.get(0)[0]);
+        assertRanked("Travel", 2, 1100_00, categories.get(0)[1]);
+        assertRanked("Office", 1, 100_00, categories.get(1)[0]);
+        assertRanked("Office", 3, 800_00, categories.get(1)[1]);
+
+        assertEquals(4, analytics.toSheets().size());
+    }
+
+    private static void assertRanked(String name, int count, long cents, LedgerAnalytics.Ranked ranked) {
+        assertEquals(name, ranked.getName());
+        assertEquals(count, ranked.getCount());
+        assertEquals(cents, ranked.getCents());
+    }
+
+    private static long midnight(int year, int month, int day) {
+        return LocalDate.of(year, month, day).atStartOfDay(ZONE).toInstant().toEpochMilli();
+    }
+
+    // Noon local time, well inside the day
+    private static long date(int year, int month, int day) {
+        return midnight(year, month, day) + 12 * 60 * 60 * 1000;
+    }
+
+    private static Invoice invoice(String vendor, String category, long date, long cents) {
+        return new Invoice(0, vendor, category, date, "invoice", Money.ofCents(cents), true, false);
+    }
+
+    private static Income income(String client, String category, long date, long cents) {
+        return new Income(0, client, category, date, "income", Money.ofCents(cents), true, false);
+    }
+}
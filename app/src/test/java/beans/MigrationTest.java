@@ -0,0 +1,196 @@
+package beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Opens a ledger laid down by the first release (user_version 0, REAL dollar
+// amounts) and checks it comes out at the current schema with nothing lost.
+class MigrationTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long JAN_15 = 1_579_064_400_000L; // 2020-01-15 EST
+
+    @TempDir
+    Path dir;
+
+    private String url;
+
+    @BeforeEach
+    void createVersion0Ledger() throws SQLException {
+        url = "jdbc:sqlite:" + new File(dir.toFile(), "v0.db").getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE vendors (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT UNIQUE NOT NULL)");
+            stmt.execute("CREATE TABLE categories (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT UNIQUE NOT NULL)");
+            stmt.execute("CREATE TABLE invoices (id INTEGER PRIMARY KEY AUTOINCREMENT, vendor TEXT NOT NULL, " +
+                    "category TEXT NOT NULL, issued_date INTEGER NOT NULL, description TEXT, amount REAL NOT NULL, " +
+                    "tax_included INTEGER NOT NULL, non_taxable INTEGER NOT NULL DEFAULT 0)");
+            stmt.execute("CREATE TABLE clients (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT UNIQUE NOT NULL)");
+            stmt.execute("CREATE TABLE income_invoices (id INTEGER PRIMARY KEY AUTOINCREMENT, client TEXT NOT NULL, " +
+                    "category TEXT NOT NULL, issued_date INTEGER NOT NULL, description TEXT, amount REAL NOT NULL, " +
+                    "tax_included INTEGER NOT NULL, non_taxable INTEGER NOT NULL DEFAULT 0)");
+
+            stmt.execute("INSERT INTO vendors (name) VALUES ('Acme')");
+            stmt.execute("INSERT INTO clients (name) VALUES ('Globex')");
+            stmt.execute("INSERT INTO categories (name) VALUES ('Office')");
+            stmt.execute("INSERT INTO invoices (vendor, category, issued_date, description, amount, tax_included, non_taxable) VALUES " +
+                    "('Acme', 'Office', " + JAN_15 + ", 'paper', 19.99, 1, 0), " +
+                    "('Initech', 'Travel', " + (JAN_15 + DAY) + ", 'taxi', 0.07, 0, 0), " +
+                    "('Acme', 'Office', " + (JAN_15 + 2 * DAY) + ", 'toner', 1234.5, 1, 1), " +
+                    "('Acme', 'Office', " + (JAN_15 + 3 * DAY) + ", 'oops', 5, 1, 0)");
+            stmt.execute("DELETE FROM invoices WHERE id IN (3, 4)");
+            stmt.execute("INSERT INTO income_invoices (client, category, issued_date, description, amount, tax_included, non_taxable) " +
+                    "VALUES ('Globex', 'Office', " + JAN_15 + ", 'consulting', 100.1, 0, 0)");
+        }
+    }
+
+    @Test
+    void filterIndexesAreCreated() throws SQLException {
+        open().close();
+        List<String> indexes = names("index");
+        for (String index : new String[] { "idx_invoices_issued_date", "idx_invoices_vendor_date",
+                "idx_invoices_category_date", "idx_income_issued_date", "idx_income_client_date",
+                "idx_income_category_date" }) {
+            assertTrue(indexes.contains(index), index + " missing from " + indexes);
+        }
+    }
+
+    @Test
+    void rowsComeThroughUnchanged() throws SQLException {
+        Database db = open();
+        try {
+            List<Invoice> invoices = db.fetchInvoices(null, null, null, null);
+            assertEquals(2, invoices.size());
+            assertEquals("Initech", invoices.get(1).getVendor());
+            assertEquals(1, db.fetchInvoices("Acme", "Office", JAN_15, JAN_15).size());
+            assertEquals("consulting", db.fetchIncomes(JAN_15, JAN_15).get(0).getDescription());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void amountsBecomeExactCents() throws SQLException {
+        Database db = open();
+        try {
+            List<Invoice> invoices = db.fetchInvoices(null, null, null, null);
+            assertEquals(1999, invoices.get(0).getAmountCents());
+            assertEquals(7, invoices.get(1).getAmountCents());
+            // 100.1 is 10009.999... as a double
+            assertEquals(10010, db.fetchIncomes(null, null).get(0).getAmountCents());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void rowsKeepTheirNamesThroughTheIdRewrite() throws SQLException {
+        Database db = open();
+        try {
+            Invoice taxi = db.fetchInvoices(null, null, null, null).get(1);
+            assertEquals("Initech", taxi.getVendor());
+            assertEquals("Travel", taxi.getCategory());
+            assertEquals("taxi", taxi.getDescription());
+            assertFalse(taxi.isTaxIncluded());
+            assertEquals("Globex", db.fetchIncomes(null, null).get(0).getClient());
+
+            // Names the lists had lost come back archived
+            assertEquals(List.of("Acme"), db.getAllVendors());
+            assertEquals(List.of("Office"), db.fetchAllCategories());
+            assertEquals(1, db.fetchInvoices("Initech", null, null, null).size());
+        } finally {
+            db.close();
+        }
+    }
+
+    // rebuildTable() carries sqlite_sequence over, so ids 3 and 4 are never handed out again
+    @Test
+    void deletedIdsAreNotReused() throws SQLException {
+        Database db = open();
+        try {
+            Invoice invoice = new Invoice(0, "Acme", "Office", JAN_15, "new", Money.ofCents(100), true, false);
+            db.insertInvoice(invoice);
+            assertEquals(5, invoice.getId());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void rollupSearchAndChangeLogStartFromTheExistingRows() throws SQLException {
+        Database db = open();
+        try {
+            int january = MonthlyRollup.period(JAN_15);
+            TaxCalculator.Accumulator invoices = db.sumMonthlyTotals(MonthlyRollup.INVOICE, january, january);
+            assertEquals(2, invoices.getCount());
+            assertEquals(1999 + 8, invoices.getTotal()); // 7 cents plus 1 cent of QST
+            assertEquals(1, db.sumMonthlyTotals(MonthlyRollup.INCOME, january, january).getCount());
+
+            assertEquals(1, db.search("taxi", null, null, 10).size());
+            assertEquals(1, db.search("initech", null, null, 10).size());
+
+            List<String> changes = new ArrayList<>();
+            db.forEachChangeSince(0, change -> changes.add((change.isIncome() ? "income " : "invoice ") + change.getId()));
+            assertEquals(List.of("invoice 1", "invoice 2", "income 1"), changes);
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void reopeningIsANoOp() throws SQLException {
+        open().close();
+        assertEquals(6, userVersion());
+        List<String> schema = names("index");
+        schema.addAll(names("table"));
+
+        Database db = open();
+        try {
+            assertEquals(2, db.fetchInvoices(null, null, null, null).size());
+        } finally {
+            db.close();
+        }
+        assertEquals(6, userVersion());
+        List<String> again = names("index");
+        again.addAll(names("table"));
+        assertEquals(schema, again);
+        assertTrue(again.contains("monthly_totals"));
+        assertTrue(again.contains("ledger_changes"));
+    }
+
+    private Database open() throws SQLException {
+        return new Database(url, StorageProfile.defaults());
+    }
+
+    private int userVersion() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.getInt(1);
+        }
+    }
+
+    private List<String> names(String type) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT name FROM sqlite_master WHERE type = '" + type + "' ORDER BY name")) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        return names;
+    }
+}
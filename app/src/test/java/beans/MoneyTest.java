@@ -0,0 +1,76 @@
+package beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class MoneyTest {
+
+    @Test
+    void parsesWhatPeopleType() {
+        assertEquals(1250, Money.parse("12.5").getCents());
+        assertEquals(-300, Money.parse("-3").getCents());
+        assertEquals(123456, Money.parse("1,234.56").getCents());
+        assertEquals(-123456789, Money.parse("-1,234,567.89").getCents());
+        assertEquals(100000, Money.parse("1,000").getCents());
+        assertEquals(9999, Money.parse(" $99.99 ").getCents());
+        assertEquals(0, Money.parse("0.00").getCents());
+    }
+
+    // Half a cent rounds away from zero, in both directions
+    @Test
+    void roundsExtraDecimalsHalfUp() {
+        assertEquals(1, Money.parse("0.005").getCents());
+        assertEquals(0, Money.parse("0.0049").getCents());
+        assertEquals(-1, Money.parse("-0.005").getCents());
+        assertEquals(1001, Money.parse("10.0050").getCents());
+        assertEquals(1000, Money.parse("10.0049999").getCents());
+    }
+
+    @Test
+    void rejectsEmptyAndGarbage() {
+        assertThrows(NumberFormatException.class, () -> Money.parse(null));
+        assertThrows(NumberFormatException.class, () -> Money.parse("  "));
+        assertThrows(NumberFormatException.class, () -> Money.parse("$"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("12.3.4"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("ten"));
+        // A comma is only a thousands separator; a decimal comma must not become $1,250.00
+        assertThrows(NumberFormatException.class, () -> Money.parse("12,50"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1,23"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1234,567.00"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1,234.5,6"));
+        assertThrows(NumberFormatException.class, () -> Money.parse(",123"));
+    }
+
+    @Test
+    void divideRoundedRoundsHalvesAwayFromZero() {
+        assertEquals(3, Money.divideRounded(5, 2));
+        assertEquals(-3, Money.divideRounded(-5, 2));
+        assertEquals(1, Money.divideRounded(4, 3));
+        assertEquals(-1, Money.divideRounded(-4, 3));
+        assertEquals(0, Money.divideRounded(1, 3));
+        assertEquals(0, Money.divideRounded(-1, 3));
+        assertEquals(2, Money.divideRounded(5, 3));
+        assertEquals(7, Money.divideRounded(7, 1));
+        assertEquals(0, Money.divideRounded(0, 9));
+    }
+
+    @Test
+    void formatsAsTyped() {
+        assertEquals("1234.56", Money.format(123456));
+        assertEquals("-0.05", Money.format(-5));
+        assertEquals("0.10", Money.format(10));
+        assertEquals("12.50", Money.parse("12.5").toString());
+    }
+
+    @Test
+    void arithmeticStaysInCents() {
+        Money a = Money.parse("0.10");
+        Money b = Money.parse("0.20");
+        assertEquals(Money.parse("0.30"), a.plus(b));
+        assertEquals(Money.ofCents(-10), a.minus(b));
+        assertEquals(Money.ZERO, Money.ofCents(0));
+        assertThrows(ArithmeticException.class, () -> Money.ofCents(Long.MAX_VALUE).plus(Money.ofCents(1)));
+    }
+}
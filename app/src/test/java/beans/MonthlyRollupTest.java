@@ -0,0 +1,136 @@
+package beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// monthly_totals is kept up to date write by write; after any mix of writes it
+// must hold exactly what rebuild() computes from the ledger.
+class MonthlyRollupTest {
+
+    private static final long START = 1_577_854_800_000L; // 2020-01-01 EST
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private Database db;
+    private final Random random = new Random(3);
+
+    @BeforeEach
+    void open() throws SQLException {
+        db = new Database("jdbc:sqlite::memory:", StorageProfile.defaults());
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        db.close();
+    }
+
+    @Test
+    void incrementalTotalsMatchARebuild() throws SQLException {
+        List<Invoice> invoices = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            invoices.add(invoice());
+        }
+        db.insertInvoices(invoices);
+        List<Income> incomes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            incomes.add(income());
+        }
+        db.insertEntries(List.of(invoice(), invoice()), incomes);
+        for (int i = 0; i < 20; i++) {
+            db.insertInvoice(invoice());
+            db.insertIncome(income());
+        }
+
+        // Moves between months, vendors and categories, and tax flags flipping
+        List<Invoice> updated = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Invoice moved = invoices.get(random.nextInt(invoices.size()));
+            moved.setIssuedDate(date());
+            moved.setVendor("Vendor " + random.nextInt(8));
+            moved.setCategory("Category " + random.nextInt(4));
+            moved.setAmount(Money.ofCents(random.nextInt(200_000) - 20_000));
+            moved.setTaxIncluded(random.nextBoolean());
+            moved.setNonTaxable(random.nextInt(5) == 0);
+            updated.add(moved);
+        }
+        db.updateInvoices(updated); // some invoices twice in one batch
+        Income income = incomes.get(0);
+        income.setIssuedDate(income.getIssuedDate() + 90 * DAY);
+        db.updateIncome(income);
+
+        List<Integer> deleted = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            deleted.add(invoices.get(random.nextInt(invoices.size())).getId());
+        }
+        db.deleteInvoices(deleted);
+        db.deleteIncome(incomes.get(1).getId());
+        db.renameVendor("Vendor 1", "Vendor One");
+
+        List<String> incremental = snapshot();
+        assertFalse(incremental.isEmpty());
+        db.rebuildMonthlyTotals();
+        assertEquals(snapshot(), incremental);
+    }
+
+    // The month a row counts in is the calendar month of its date
+    @Test
+    void quarterSumsAddUpItsMonths() throws SQLException {
+        for (int i = 0; i < 200; i++) {
+            db.insertInvoice(invoice());
+        }
+        int from = MonthlyRollup.period(START);
+        int to = MonthlyRollup.period(START + 80 * DAY);
+
+        TaxCalculator.Accumulator quarter = db.sumMonthlyTotals(MonthlyRollup.INVOICE, from, to);
+        TaxCalculator.Accumulator scan = new TaxCalculator.Accumulator();
+        TaxCalculator.Breakdown row = new TaxCalculator.Breakdown();
+        for (Invoice invoice : db.fetchInvoices(null, null, START, null)) {
+            int period = MonthlyRollup.period(invoice.getIssuedDate());
+            if (period >= from && period <= to) {
+                TaxCalculator.DEFAULT.compute(invoice.getAmountCents(), invoice.isTaxIncluded(), invoice.isNonTaxable(),
+                        row, scan);
+            }
+        }
+        assertEquals(scan.getCount(), quarter.getCount());
+        assertEquals(scan.getBase(), quarter.getBase());
+        assertEquals(scan.getGst(), quarter.getGst());
+        assertEquals(scan.getQst(), quarter.getQst());
+        assertEquals(scan.getTotal(), quarter.getTotal());
+        assertEquals(scan.getNonTaxable(), quarter.getNonTaxable());
+    }
+
+    private List<String> snapshot() throws SQLException {
+        List<String> rows = new ArrayList<>();
+        for (String kind : new String[] { MonthlyRollup.INVOICE, MonthlyRollup.INCOME }) {
+            for (MonthlyRollup.Total t : db.fetchMonthlyTotals(kind, 0, 999_999)) {
+                TaxCalculator.Accumulator a = t.getTotals();
+                rows.add(kind + " " + t.getPeriod() + " " + t.getCategory() + " " + t.getParty() + ": " + a.getCount()
+                        + " " + a.getBase() + " " + a.getGst() + " " + a.getQst() + " " + a.getTotal() + " " + a.getNonTaxable());
+            }
+        }
+        return rows;
+    }
+
+    private Invoice invoice() {
+        return new Invoice(0, "Vendor " + random.nextInt(8), "Category " + random.nextInt(4), date(), "invoice",
+                Money.ofCents(random.nextInt(100_000) + 1), random.nextBoolean(), random.nextInt(10) == 0);
+    }
+
+    private Income income() {
+        return new Income(0, "Client " + random.nextInt(4), "Category " + random.nextInt(4), date(), "income",
+                Money.ofCents(random.nextInt(500_000) + 1), random.nextBoolean(), random.nextInt(10) == 0);
+    }
+
+    // Somewhere in 2020
+    private long date() {
+        return START + random.nextInt(366) * DAY + random.nextInt(24) * DAY / 24;
+    }
+}
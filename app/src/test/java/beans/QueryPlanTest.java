@@ -0,0 +1,82 @@
+package beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+// Every filter the invoice and income tables offer has to be answered from one
+// of the v1 indexes (ids since v3), never by reading the whole table.
+class QueryPlanTest {
+
+    private static final long START = 1_577_854_800_000L; // 2020-01-01 EST
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private static Database db;
+
+    @BeforeAll
+    static void open() throws SQLException {
+        db = new Database("jdbc:sqlite::memory:", StorageProfile.defaults());
+        List<Invoice> invoices = new ArrayList<>();
+        List<Income> incomes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            invoices.add(new Invoice(0, "Vendor " + i % 40, "Category " + i % 8, START + i * DAY / 4, "invoice " + i,
+                    Money.ofCents(100 + i), i % 3 == 0, i % 10 == 0));
+            incomes.add(new Income(0, "Client " + i % 10, "Category " + i % 8, START + i * DAY / 4, "income " + i,
+                    Money.ofCents(1000 + i), i % 2 == 0, false));
+        }
+        db.insertEntries(invoices, incomes);
+    }
+
+    @AfterAll
+    static void close() throws SQLException {
+        db.close();
+    }
+
+    // Shape bits: 1 vendor, 2 category, 4 from, 8 to. With none set the whole table is the answer.
+    @Test
+    void everyInvoiceFilterSearchesAnIndex() throws SQLException {
+        for (int shape = 1; shape < 16; shape++) {
+            LedgerQuery query = new LedgerQuery()
+                    .party((shape & 1) != 0 ? "Vendor 0" : null)
+                    .category((shape & 2) != 0 ? "Category 0" : null)
+                    .between((shape & 4) != 0 ? START + 100 * DAY : null, (shape & 8) != 0 ? START + 130 * DAY : null);
+            assertSearchesIndex("invoices", "idx_invoices_", db.explainInvoices(query), "invoice shape " + shape);
+        }
+    }
+
+    @Test
+    void everyIncomeFilterSearchesAnIndex() throws SQLException {
+        Long[][] ranges = { { START + 100 * DAY, null }, { null, START + 130 * DAY }, { START + 100 * DAY, START + 130 * DAY } };
+        for (Long[] range : ranges) {
+            LedgerQuery query = new LedgerQuery().between(range[0], range[1]);
+            assertSearchesIndex("income_invoices", "idx_income_", db.explainIncomes(query),
+                    "income from " + range[0] + " to " + range[1]);
+        }
+    }
+
+    // Names the lists don't know bind an id that matches nothing; the plan must not change
+    @Test
+    void unknownNamesKeepTheSamePlan() throws SQLException {
+        LedgerQuery known = new LedgerQuery().party("Vendor 0").between(START, START + 30 * DAY);
+        LedgerQuery unknown = new LedgerQuery().party("Nobody").between(START, START + 30 * DAY);
+        assertEquals(db.explainInvoices(known), db.explainInvoices(unknown));
+    }
+
+    private static void assertSearchesIndex(String table, String indexPrefix, List<String> plan, String what) {
+        assertFalse(plan.isEmpty(), what);
+        for (String step : plan) {
+            assertFalse(step.startsWith("SCAN " + table), what + " scans the table: " + plan);
+            assertFalse(step.contains("USE TEMP B-TREE"), what + " sorts: " + plan);
+        }
+        assertTrue(plan.stream().anyMatch(step -> step.startsWith("SEARCH " + table + " USING INDEX " + indexPrefix)),
+                what + " uses no index: " + plan);
+    }
+}
@@ -0,0 +1,76 @@
+package beans;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ReportCacheTest {
+
+    private static final long JAN = 1_577_854_800_000L;
+    private static final long FEB = JAN + 31L * 24 * 60 * 60 * 1000;
+    private static final long MAR = FEB + 29L * 24 * 60 * 60 * 1000;
+
+    @Test
+    void evictsLeastRecentlyUsedFirst() {
+        ReportCache cache = new ReportCache(100);
+        ReportCache.Report jan = report(40), feb = report(40), mar = report(40);
+        cache.put(key(JAN, 1), jan);
+        cache.put(key(FEB, 1), feb);
+        assertSame(jan, cache.get(key(JAN, 1))); // now February is the oldest
+
+        cache.put(key(MAR, 1), mar);
+        assertNull(cache.get(key(FEB, 1)));
+        assertSame(jan, cache.get(key(JAN, 1)));
+        assertSame(mar, cache.get(key(MAR, 1)));
+    }
+
+    @Test
+    void replacingAnEntryFreesItsBytes() {
+        ReportCache cache = new ReportCache(100);
+        ReportCache.Report jan = report(60), again = report(60), feb = report(40);
+        cache.put(key(JAN, 1), jan);
+        cache.put(key(JAN, 1), again);
+        cache.put(key(FEB, 1), feb);
+        assertSame(again, cache.get(key(JAN, 1)));
+        assertSame(feb, cache.get(key(FEB, 1)));
+    }
+
+    @Test
+    void skipsReportsBiggerThanTheWholeCache() {
+        ReportCache cache = new ReportCache(100);
+        ReportCache.Report jan = report(40);
+        cache.put(key(JAN, 1), jan);
+        cache.put(key(FEB, 1), report(101));
+        assertNull(cache.get(key(FEB, 1)));
+        assertSame(jan, cache.get(key(JAN, 1)));
+    }
+
+    // A newer data version makes every older entry unreachable, and drops it
+    @Test
+    void dropsReportsOfOlderDataVersions() {
+        ReportCache cache = new ReportCache(100);
+        cache.put(key(JAN, 1), report(40));
+        cache.put(key(FEB, 1), report(40));
+        assertNull(cache.get(key(JAN, 2)));
+
+        // Their bytes were freed: two more fit without evicting each other
+        ReportCache.Report jan = report(50), feb = report(50);
+        cache.put(key(JAN, 2), jan);
+        cache.put(key(FEB, 2), feb);
+        assertSame(jan, cache.get(key(JAN, 2)));
+        assertSame(feb, cache.get(key(FEB, 2)));
+        assertNull(cache.get(key(FEB, 1)));
+    }
+
+    private static ReportCache.Key key(long from, long dataVersion) {
+        return new ReportCache.Key(from, from + 1, false, dataVersion);
+    }
+
+    private static ReportCache.Report report(int bytes) {
+        return new ReportCache.Report(List.of("Invoices"), List.of(new byte[bytes]),
+                new TaxCalculator.Accumulator(), new TaxCalculator.Accumulator());
+    }
+}
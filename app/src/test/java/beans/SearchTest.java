@@ -0,0 +1,98 @@
+package beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// search() runs on the ledger_search full-text index; these check what comes
+// back and in which order, not how fast.
+class SearchTest {
+
+    private static final long START = 1_577_854_800_000L; // 2020-01-01 EST
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private Database db;
+
+    @BeforeEach
+    void open() throws SQLException {
+        db = new Database("jdbc:sqlite::memory:", StorageProfile.defaults());
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        db.close();
+    }
+
+    // A vendor / client match weighs double, so it beats the same word in a description
+    @Test
+    void partyMatchesRankFirst() throws SQLException {
+        db.insertInvoice(invoice("Initech", "paper from the acme store", START));
+        db.insertInvoice(invoice("Acme", "paper", START));
+        db.insertInvoice(invoice("Globex", "toner", START));
+        db.insertIncome(new Income(0, "Acme", "Office", START, "consulting", Money.ofCents(5000), false, false));
+
+        List<ExcelExporter.FinancialEntry> hits = db.search("acme", null, null, 10);
+        assertEquals(3, hits.size());
+        assertEquals("Initech", hits.get(2).getParty());
+        assertTrue(hits.stream().anyMatch(hit -> hit instanceof Income));
+
+        // Every word has to match, in any column
+        assertEquals(2, db.search("acme paper", null, null, 10).size());
+        assertEquals(0, db.search("acme toner", null, null, 10).size());
+    }
+
+    @Test
+    void lastWordMatchesAsAPrefix() throws SQLException {
+        db.insertInvoice(invoice("Acme", "printer paper", START));
+        db.insertInvoice(invoice("Acme", "paperclips", START + DAY));
+        db.insertInvoice(invoice("Acme", "printer toner", START + 2 * DAY));
+
+        assertEquals(2, db.search("pap", null, null, 10).size());
+        assertEquals(1, db.search("printer pap", null, null, 10).size());
+        // Only the last word, and not once it is followed by a space
+        assertEquals(0, db.search("pri paper", null, null, 10).size());
+        assertEquals(0, db.search("pap ", null, null, 10).size());
+        assertEquals(1, db.search("paper ", null, null, 10).size());
+
+        assertEquals(1, db.search("pap", START + DAY, null, 10).size());
+    }
+
+    // Past MAX_RANKED_MATCHES (10,000) matches, the latest issued dates come back
+    // first, whatever order the rows were entered in; a tie goes to the newer entry.
+    @Test
+    void tooManyMatchesComeBackLatestIssuedFirst() throws SQLException {
+        List<Long> dates = new ArrayList<>();
+        for (int i = 0; i < 10_050; i++) {
+            dates.add(START + i * DAY / 8);
+        }
+        Collections.shuffle(dates, new Random(5));
+        List<Invoice> invoices = new ArrayList<>();
+        for (long date : dates) {
+            invoices.add(invoice("Acme", "common supplies", date));
+        }
+        long latest = Collections.max(dates);
+        invoices.add(invoice("Acme", "common supplies", latest));
+        db.insertInvoices(invoices);
+
+        List<ExcelExporter.FinancialEntry> hits = db.search("common", null, null, 20);
+        assertEquals(20, hits.size());
+        assertEquals(invoices.get(invoices.size() - 1).getId(), ((Invoice) hits.get(0)).getId());
+        assertEquals(latest, hits.get(1).getIssuedDate());
+        for (int i = 2; i < hits.size(); i++) {
+            assertEquals(latest - (i - 1) * DAY / 8, hits.get(i).getIssuedDate());
+        }
+    }
+
+    private static Invoice invoice(String vendor, String description, long date) {
+        return new Invoice(0, vendor, "Office", date, description, Money.ofCents(1999), true, false);
+    }
+}
@@ -0,0 +1,91 @@
+package beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class TaxCalculatorTest {
+
+    private final TaxCalculator taxes = TaxCalculator.DEFAULT;
+    private final TaxCalculator.Breakdown row = new TaxCalculator.Breakdown();
+
+    @Test
+    void taxExcludedAddsGstThenQstOnTop() {
+        taxes.compute(10_000, false, false, row);
+        assertEquals(10_000, row.getBase());
+        assertEquals(500, row.getGst());
+        assertEquals(1_047, row.getQst()); // 10,500 * 9.975% = 1,047.375
+        assertEquals(11_547, row.getTotal());
+    }
+
+    @Test
+    void taxIncludedSplitsTheReceiptTotal() {
+        taxes.compute(11_547, true, false, row);
+        assertEquals(10_000, row.getBase());
+        assertEquals(500, row.getGst());
+        assertEquals(1_047, row.getQst());
+    }
+
+    // The rounded taxes can't always add back up to the receipt; the base takes the odd cent
+    @Test
+    void baseAbsorbsTheLeftoverCent() {
+        taxes.compute(100, true, false, row);
+        assertEquals(87, row.getBase());
+        assertEquals(4, row.getGst());
+        assertEquals(9, row.getQst());
+
+        for (long amount = -20_000; amount <= 200_000; amount++) {
+            taxes.compute(amount, true, false, row);
+            assertEquals(amount, row.getTotal(), "tax-included " + amount);
+        }
+    }
+
+    @Test
+    void nonTaxableHasNoTax() {
+        taxes.compute(12_345, true, true, row);
+        assertEquals(12_345, row.getBase());
+        assertEquals(0, row.getGst());
+        assertEquals(0, row.getQst());
+    }
+
+    @Test
+    void creditsMirrorCharges() {
+        TaxCalculator.Breakdown credit = new TaxCalculator.Breakdown();
+        for (long amount = 1; amount <= 5_000; amount++) {
+            for (boolean included : new boolean[] { false, true }) {
+                taxes.compute(amount, included, false, row);
+                taxes.compute(-amount, included, false, credit);
+                assertEquals(-row.getBase(), credit.getBase());
+                assertEquals(-row.getGst(), credit.getGst());
+                assertEquals(-row.getQst(), credit.getQst());
+            }
+        }
+    }
+
+    @Test
+    void accumulatorSumsEveryRowOnce() {
+        TaxCalculator.Accumulator totals = new TaxCalculator.Accumulator();
+        taxes.compute(10_000, false, false, row, totals);
+        taxes.compute(11_547, true, false, row, totals);
+        taxes.compute(2_500, false, true, row, totals);
+
+        assertEquals(3, totals.getCount());
+        assertEquals(22_500, totals.getBase());
+        assertEquals(1_000, totals.getGst());
+        assertEquals(2_094, totals.getQst());
+        assertEquals(25_594, totals.getTotal());
+        assertEquals(2_500, totals.getNonTaxable());
+
+        TaxCalculator.Accumulator merged = new TaxCalculator.Accumulator();
+        merged.add(totals);
+        merged.add(totals);
+        assertEquals(6, merged.getCount());
+        assertEquals(2 * 25_594, merged.getTotal());
+    }
+
+    @Test
+    void rejectsNegativeRates() {
+        assertThrows(IllegalArgumentException.class, () -> new TaxCalculator(-1, 9_975));
+    }
+}
@@ -0,0 +1,156 @@
+package beans;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Insert throughput and read latency of Database against a synthetic ledger.
+// Reads cover a one month window in the middle of the books; vendor 0 and
+// category 0 are the busiest.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DatabaseBenchmarks {
+
+    static final int INSERT_BATCH = 1000;
+    static final int PARALLEL_READERS = 4;
+    static final long MONTH = 30L * 24 * 60 * 60 * 1000;
+    static final long FROM = SyntheticLedger.START + SyntheticLedger.SPAN / 2;
+    static final long TO = FROM + MONTH;
+
+    // An empty ledger that grows with every insert
+    @State(Scope.Benchmark)
+    public static class EmptyLedger {
+        File file;
+        Database db;
+        Random random = new Random(7);
+        int counter;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            file = SyntheticLedger.create(0, 0, 1);
+            db = SyntheticLedger.open(file);
+            db.setBatchSize(INSERT_BATCH);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            db.close();
+            file.delete();
+        }
+    }
+
+    // ledgerRows invoices and a tenth as many incomes, with a reader per PARALLEL_READERS thread
+    @State(Scope.Benchmark)
+    public static class Ledger {
+        @Param("100000")
+        int ledgerRows;
+
+        File file;
+        Database db;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            file = SyntheticLedger.create(ledgerRows, ledgerRows / 10, 1);
+            db = SyntheticLedger.open(file, StorageProfile.defaults(), PARALLEL_READERS);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            db.close();
+            file.delete();
+        }
+    }
+
+    // One combination of the four fetchInvoices filters: Vendor, Category, From, To, "-" when unset
+    @State(Scope.Benchmark)
+    public static class Filter {
+        @Param({ "----", "V---", "-C--", "VC--", "--F-", "V-F-", "-CF-", "VCF-",
+                "---T", "V--T", "-C-T", "VC-T", "--FT", "V-FT", "-CFT", "VCFT" })
+        String shape;
+
+        String vendor;
+        String category;
+        Long from;
+        Long to;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            vendor = shape.charAt(0) == 'V' ? SyntheticLedger.vendor(0) : null;
+            category = shape.charAt(1) == 'C' ? SyntheticLedger.category(0) : null;
+            from = shape.charAt(2) == 'F' ? FROM : null;
+            to = shape.charAt(3) == 'T' ? TO : null;
+        }
+    }
+
+    // One autocommit transaction per row
+    @Benchmark
+    public void insertInvoice(EmptyLedger ledger) throws Exception {
+        ledger.db.insertInvoice(SyntheticLedger.invoice(ledger.random, ledger.counter++, 1_000_000));
+    }
+
+    // Per row, INSERT_BATCH rows per transaction
+    @Benchmark
+    @OperationsPerInvocation(INSERT_BATCH)
+    public void insertInvoices(EmptyLedger ledger) throws Exception {
+        List<Invoice> batch = new ArrayList<>(INSERT_BATCH);
+        for (int i = 0; i < INSERT_BATCH; i++) {
+            batch.add(SyntheticLedger.invoice(ledger.random, ledger.counter++, 1_000_000));
+        }
+        ledger.db.insertInvoices(batch);
+    }
+
+    @Benchmark
+    public List<Invoice> fetchInvoices(Ledger ledger, Filter filter) throws Exception {
+        return ledger.db.fetchInvoices(filter.vendor, filter.category, filter.from, filter.to);
+    }
+
+    @Benchmark
+    public List<Income> fetchIncomes(Ledger ledger) throws Exception {
+        return ledger.db.fetchIncomes(FROM, TO);
+    }
+
+    // The same month read by several threads at once, each on its own reader connection
+    @Benchmark
+    @Threads(PARALLEL_READERS)
+    public List<Invoice> fetchInvoicesConcurrently(Ledger ledger) throws Exception {
+        return ledger.db.fetchInvoices(null, null, FROM, TO);
+    }
+
+    // A quarter's invoice totals from the monthly rollup...
+    @Benchmark
+    public long quarterTotalsFromRollup(Ledger ledger) throws Exception {
+        return ledger.db.sumMonthlyTotals(MonthlyRollup.INVOICE,
+                MonthlyRollup.period(FROM), MonthlyRollup.period(FROM + 3 * MONTH)).getTotal();
+    }
+
+    // ... and by splitting every row
+    @Benchmark
+    public long quarterTotalsFromScan(Ledger ledger) throws Exception {
+        TaxCalculator.Breakdown row = new TaxCalculator.Breakdown();
+        TaxCalculator.Accumulator totals = new TaxCalculator.Accumulator();
+        ledger.db.forEachInvoice(null, null, FROM, FROM + 3 * MONTH, invoice -> TaxCalculator.DEFAULT.compute(
+                invoice.getAmountCents(), invoice.isTaxIncluded(), invoice.isNonTaxable(), row, totals));
+        return totals.getTotal();
+    }
+}
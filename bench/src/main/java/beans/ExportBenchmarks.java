@@ -0,0 +1,118 @@
+package beans;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Whole-report exports straight from a synthetic ledger, one report per op.
+// rowExecutor picks how rows are prepared (see ParallelRows): "none" formats
+// each row as it is read, "caller" runs every chunk on the calling thread and
+// "pool" on a pool with one thread per core.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ExportBenchmarks {
+
+    static final long FROM = SyntheticLedger.START;
+    static final long TO = SyntheticLedger.START + SyntheticLedger.SPAN;
+
+    public abstract static class ExportLedger {
+        File ledger;
+        File out;
+        Database db;
+        ForkJoinPool pool;
+        Executor executor;
+        Map<String, String> headerInfo = new LinkedHashMap<>();
+
+        void open(int rows, String rowExecutor, String suffix) throws Exception {
+            headerInfo.put("Company", "Benchmark Inc.");
+            headerInfo.put("Report Title", "Synthetic ledger");
+            ledger = SyntheticLedger.create(rows, rows / 10, 1);
+            out = File.createTempFile("beans-bench-", suffix);
+            db = SyntheticLedger.open(ledger);
+            if (rowExecutor.equals("pool")) {
+                pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+                executor = pool;
+            } else if (rowExecutor.equals("caller")) {
+                executor = Runnable::run;
+            }
+        }
+
+        void close() throws Exception {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            db.close();
+            ledger.delete();
+            out.delete();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class XlsxLedger extends ExportLedger {
+        @Param({ "1000", "100000", "1000000" })
+        int rows;
+
+        @Param({ "none", "caller", "pool" })
+        String rowExecutor;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            open(rows, rowExecutor, ".xlsx");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            close();
+        }
+    }
+
+    // The legacy .xls writer stops at 65,535 rows
+    @State(Scope.Benchmark)
+    public static class XlsLedger extends ExportLedger {
+        @Param({ "1000", "60000" })
+        int xlsRows;
+
+        @Param({ "none", "caller", "pool" })
+        String rowExecutor;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            open(xlsRows, rowExecutor, ".xls");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            close();
+        }
+    }
+
+    @Benchmark
+    public void xlsx(XlsxLedger ledger) throws Exception {
+        ExcelExporter.exportReport(ledger.db, FROM, TO, new XlsxExporter(ledger.out, ledger.headerInfo, ledger.executor));
+    }
+
+    @Benchmark
+    public void xls(XlsLedger ledger) throws Exception {
+        ExcelExporter.exportReport(ledger.db, FROM, TO, new ExcelExporter(ledger.out, ledger.headerInfo, ledger.executor));
+    }
+}
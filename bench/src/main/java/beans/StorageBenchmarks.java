@@ -0,0 +1,153 @@
+package beans;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The same inserts and range scans under the legacy rollback-journal settings
+// and under the default WAL storage profile.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StorageBenchmarks {
+
+    static final long YEAR = 365L * 24 * 60 * 60 * 1000;
+    static final long FROM = SyntheticLedger.START + SyntheticLedger.SPAN / 2;
+    static final long TO = FROM + YEAR;
+
+    @State(Scope.Benchmark)
+    public static class Ledger {
+        @Param("100000")
+        int ledgerRows;
+
+        @Param({ "legacy", "wal" })
+        String profile;
+
+        File file;
+        Database db;
+        Random random = new Random(7);
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            file = SyntheticLedger.create(ledgerRows, 0, 1);
+            db = SyntheticLedger.open(file, storageProfile());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            db.close();
+            file.delete();
+        }
+
+        StorageProfile storageProfile() {
+            return profile.equals("legacy") ? StorageProfile.legacy() : StorageProfile.defaults();
+        }
+    }
+
+    // A second connection inserts rows nonstop for as long as the trial runs.
+    // With a rollback journal each insert locks readers out; with WAL it doesn't.
+    @State(Scope.Benchmark)
+    public static class Writer {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong inserts = new AtomicLong();
+        final AtomicLong busyInserts = new AtomicLong();
+        Database db;
+        Thread thread;
+        long start;
+
+        @Setup(Level.Trial)
+        public void setUp(Ledger ledger) throws Exception {
+            db = SyntheticLedger.open(ledger.file, ledger.storageProfile());
+            thread = new Thread(() -> {
+                Random random = new Random(11);
+                while (running.get()) {
+                    try {
+                        db.insertInvoice(SyntheticLedger.invoice(random, 0, 1));
+                        inserts.incrementAndGet();
+                    } catch (SQLException e) {
+                        if (!isBusy(e)) {
+                            e.printStackTrace();
+                            return;
+                        }
+                        busyInserts.incrementAndGet();
+                    }
+                }
+            }, "bench-writer");
+            start = System.nanoTime();
+            thread.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            running.set(false);
+            thread.join();
+            db.close();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format("  concurrent writer: %.1f inserts/s, SQLITE_BUSY: %d inserts",
+                    inserts.get() / seconds, busyInserts.get()));
+        }
+    }
+
+    // Scans that timed out waiting for the writer, reported next to the score
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class BusyScans {
+        public long busyScans;
+    }
+
+    // One autocommit transaction per row, as the New Invoice tab does.
+    // Rows are dated before the scanned year so the scans below stay comparable.
+    @Benchmark
+    public void insertInvoice(Ledger ledger) throws Exception {
+        ledger.db.insertInvoice(SyntheticLedger.invoice(ledger.random, 0, 1));
+    }
+
+    // A year of invoices streamed off the cursor, as an export reads them
+    @Benchmark
+    public long rangeScan(Ledger ledger) throws Exception {
+        return scan(ledger.db);
+    }
+
+    @Benchmark
+    public long rangeScanWhileWriting(Ledger ledger, Writer writer, BusyScans busy) throws Exception {
+        try {
+            return scan(ledger.db);
+        } catch (SQLException e) {
+            if (!isBusy(e)) {
+                throw e;
+            }
+            busy.busyScans++;
+            return 0;
+        }
+    }
+
+    private static long scan(Database db) throws Exception {
+        long[] cents = { 0 };
+        db.forEachInvoice(null, null, FROM, TO, invoice -> cents[0] += invoice.getAmountCents());
+        return cents[0];
+    }
+
+    private static boolean isBusy(SQLException e) {
+        return e.getMessage() != null && e.getMessage().contains("SQLITE_BUSY");
+    }
+}
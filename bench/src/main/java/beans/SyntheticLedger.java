@@ -0,0 +1,123 @@
+package beans;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Generates a throwaway SQLite ledger with a realistic spread of vendors,
+// clients, categories, amounts and dates. The same seed always produces the
+// same books, so runs across releases compare like with like.
+public final class SyntheticLedger {
+
+    public static final int VENDORS = 200;
+    public static final int CLIENTS = 50;
+    public static final int CATEGORIES = 20;
+
+    // Entries are spread evenly over five years ending START + SPAN
+    public static final long START = 1_577_854_800_000L; // 2020-01-01 EST
+    public static final long SPAN = 5L * 365 * 24 * 60 * 60 * 1000;
+
+    private static final int INSERT_CHUNK = 10_000;
+
+    private SyntheticLedger() {
+    }
+
+    // Creates a new temp ledger holding the given number of invoices and incomes
+    public static File create(int invoices, int incomes, long seed) throws IOException, SQLException {
+        File file = File.createTempFile("beans-bench-", ".db");
+        file.deleteOnExit();
+
+        Random random = new Random(seed);
+        Database db = open(file);
+        try {
+            db.setBatchSize(INSERT_CHUNK);
+            for (int i = 0; i < VENDORS; i++) db.insertVendor(vendor(i));
+            for (int i = 0; i < CLIENTS; i++) db.insertClient(client(i));
+            for (int i = 0; i < CATEGORIES; i++) db.insertCategory(category(i));
+
+            List<Invoice> invoiceChunk = new ArrayList<>(INSERT_CHUNK);
+            for (int i = 0; i < invoices; i++) {
+                invoiceChunk.add(invoice(random, i, invoices));
+                if (invoiceChunk.size() == INSERT_CHUNK) {
+                    db.insertInvoices(invoiceChunk);
+                    invoiceChunk.clear();
+                }
+            }
+            db.insertInvoices(invoiceChunk);
+
+            List<Income> incomeChunk = new ArrayList<>(INSERT_CHUNK);
+            for (int i = 0; i < incomes; i++) {
+                incomeChunk.add(income(random, i, incomes));
+                if (incomeChunk.size() == INSERT_CHUNK) {
+                    db.insertIncomes(incomeChunk);
+                    incomeChunk.clear();
+                }
+            }
+            db.insertIncomes(incomeChunk);
+        } finally {
+            db.close();
+        }
+        return file;
+    }
+
+    // Uses the default storage profile, not whatever storage.properties the run happens to see
+    public static Database open(File file) throws SQLException {
+        return open(file, StorageProfile.defaults());
+    }
+
+    public static Database open(File file, StorageProfile profile) throws SQLException {
+        return new Database("jdbc:sqlite:" + file.getAbsolutePath(), profile);
+    }
+
+    public static Database open(File file, StorageProfile profile, int readerCount) throws SQLException {
+        return new Database("jdbc:sqlite:" + file.getAbsolutePath(), profile, readerCount);
+    }
+
+    // Dates rise with the index so a range of the ledger maps to a contiguous slice
+    public static Invoice invoice(Random random, int index, int count) {
+        return new Invoice(0,
+                vendor(skewed(random, VENDORS)),
+                category(random.nextInt(CATEGORIES)),
+                dateAt(index, count),
+                "Receipt " + index,
+                Money.ofCents(100 + random.nextInt(500_000)),
+                random.nextInt(3) == 0,
+                random.nextInt(10) == 0);
+    }
+
+    public static Income income(Random random, int index, int count) {
+        return new Income(0,
+                client(skewed(random, CLIENTS)),
+                category(random.nextInt(CATEGORIES)),
+                dateAt(index, count),
+                "Invoice " + index,
+                Money.ofCents(10_000 + random.nextInt(5_000_000)),
+                random.nextBoolean(),
+                random.nextInt(20) == 0);
+    }
+
+    public static long dateAt(int index, int count) {
+        return START + (long) ((double) index / Math.max(count, 1) * SPAN);
+    }
+
+    public static String vendor(int i) {
+        return "Vendor " + i;
+    }
+
+    public static String client(int i) {
+        return "Client " + i;
+    }
+
+    public static String category(int i) {
+        return "Category " + i;
+    }
+
+    // A few vendors/clients get most of the entries, like real books
+    private static int skewed(Random random, int bound) {
+        double r = random.nextDouble();
+        return (int) (r * r * bound);
+    }
+}
@@ -0,0 +1,70 @@
+package beans;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Per-row cost of the tax kernel. With -prof gc, steady state should show
+// gc.alloc.rate.norm at 0 B/op.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class TaxBenchmarks {
+
+    static final int ROWS = 4096;
+
+    final TaxCalculator taxes = TaxCalculator.DEFAULT;
+    final TaxCalculator.Breakdown row = new TaxCalculator.Breakdown();
+    final TaxCalculator.Accumulator totals = new TaxCalculator.Accumulator();
+    long[] amounts;
+    boolean[] taxIncluded;
+    boolean[] nonTaxable;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        amounts = new long[ROWS];
+        taxIncluded = new boolean[ROWS];
+        nonTaxable = new boolean[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            amounts[i] = 100 + random.nextInt(500_000);
+            taxIncluded[i] = random.nextInt(3) == 0;
+            nonTaxable[i] = random.nextInt(10) == 0;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long compute() {
+        long checksum = 0;
+        for (int i = 0; i < ROWS; i++) {
+            taxes.compute(amounts[i], taxIncluded[i], nonTaxable[i], row);
+            checksum += row.getTotal();
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long computeAndAccumulate() {
+        for (int i = 0; i < ROWS; i++) {
+            taxes.compute(amounts[i], taxIncluded[i], nonTaxable[i], row, totals);
+        }
+        return totals.getTotal();
+    }
+}
@@ -0,0 +1,61 @@
+package beans;
+
+import java.awt.Component;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+
+// All jobs share one worker thread, so they run one at a time in the order they
+// were submitted and an edit never overtakes the one before it; the EDT only
+// ever sees the results.
+public class BackgroundTasks {
+
+    // Work to run on the worker thread
+    public interface Task<T> {
+        T run() throws Exception;
+    }
+
+    // Called on the EDT with the task's result
+    public interface Callback<T> {
+        void done(T result);
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "beans-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Runs task in the background and hands its result to onSuccess on the EDT.
+    // source is disabled until the task finishes so it can't be fired twice;
+    // failures are shown in a dialog over it as errorMessage + the cause.
+    public <T> void submit(Component source, String errorMessage, Task<T> task, Callback<T> onSuccess) {
+        source.setEnabled(false);
+        execute(new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return task.run();
+            }
+
+            @Override
+            protected void done() {
+                source.setEnabled(true);
+                try {
+                    onSuccess.done(get());
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(source, errorMessage + cause.getMessage());
+                }
+            }
+        });
+    }
+
+    // Queues a worker that manages its own progress and completion, like ExportTask
+    public void execute(SwingWorker<?, ?> worker) {
+        executor.execute(worker);
+    }
+}
@@ -0,0 +1,75 @@
+package beans;
+
+import java.sql.SQLException;
+
+// Money in and out over a period, fed one entry at a time in date order
+// (Database.forEachEntry() gives exactly that), so a whole period costs one
+// pass over the ledger and no list. Incomes count as money in and invoices
+// as money out, taxes included. Alongside the running balance it keeps the
+// sales taxes collected on incomes and paid on invoices; what is owed to the
+// government is the difference.
+public final class CashFlow {
+
+    private final TaxCalculator taxes;
+    private final TaxCalculator.Breakdown breakdown = new TaxCalculator.Breakdown(); // reused for every entry
+    private final TaxCalculator.Accumulator in = new TaxCalculator.Accumulator();
+    private final TaxCalculator.Accumulator out = new TaxCalculator.Accumulator();
+
+    private long balance;
+    private long lowestBalance;
+    private long lowestBalanceDate;
+
+    // openingBalanceCents is the cash on hand before the first entry
+    public CashFlow(TaxCalculator taxes, long openingBalanceCents) {
+        this.taxes = taxes;
+        this.balance = openingBalanceCents;
+        this.lowestBalance = openingBalanceCents;
+    }
+
+    // Every entry issued between the two timestamps (inclusive, either may be null), starting from zero
+    public static CashFlow of(Database db, Long fromTimestamp, Long toTimestamp) throws SQLException {
+        CashFlow flow = new CashFlow(TaxCalculator.DEFAULT, 0);
+        db.forEachEntry(fromTimestamp, toTimestamp, flow::add);
+        return flow;
+    }
+
+    // Entries must come in issued date order for the balance figures to mean anything
+    public void add(ExcelExporter.FinancialEntry entry) {
+        if (entry.isIncome()) {
+            taxes.compute(entry.getAmountCents(), entry.isTaxIncluded(), entry.isNonTaxable(), breakdown, in);
+            balance += breakdown.getTotal();
+        } else {
+            taxes.compute(entry.getAmountCents(), entry.isTaxIncluded(), entry.isNonTaxable(), breakdown, out);
+            balance -= breakdown.getTotal();
+        }
+        // Not only after invoices: a refund is entered as a negative income
+        if (balance < lowestBalance) {
+            lowestBalance = balance;
+            lowestBalanceDate = entry.getIssuedDate();
+        }
+    }
+
+    // Incomes, split into base / GST / QST
+    public TaxCalculator.Accumulator getIn() { return in; }
+
+    // Invoices, split into base / GST / QST
+    public TaxCalculator.Accumulator getOut() { return out; }
+
+    // Money in minus money out
+    public long getNetCents() { return in.getTotal() - out.getTotal(); }
+
+    // Opening balance plus everything added so far
+    public long getBalanceCents() { return balance; }
+
+    // The lowest the balance went, and when; the opening balance and 0 if it never dipped below it
+    public long getLowestBalanceCents() { return lowestBalance; }
+    public long getLowestBalanceDate() { return lowestBalanceDate; }
+
+    // GST collected minus GST paid; negative means a refund is due
+    public long getGstRemittanceCents() { return in.getGst() - out.getGst(); }
+
+    // QST collected minus QST paid; negative means a refund is due
+    public long getQstRemittanceCents() { return in.getQst() - out.getQst(); }
+
+    public long getTaxRemittanceCents() { return getGstRemittanceCents() + getQstRemittanceCents(); }
+}
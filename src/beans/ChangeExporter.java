@@ -0,0 +1,83 @@
+package beans;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+
+// Writes what changed in the ledger since a change sequence number as a CSV,
+// one line per invoice or income (see Database.forEachChangeSince()), so a
+// copy kept elsewhere, like the accountant's or a backup, is refreshed from a
+// small delta instead of a full export. Lines are in change order: apply them
+// top to bottom, replacing the entry with the same type and id, or dropping it
+// for a delete. The columns after id are the ones CsvImporter reads.
+public final class ChangeExporter {
+
+    public static final String HEADER =
+            "seq,change,type,id,date,amount,party,category,description,tax_included,non_taxable";
+
+    // What one export wrote
+    public static final class Result {
+        private final long since;
+        private long lastSeq;
+        private int upserts, deletes;
+
+        Result(long since) {
+            this.since = since;
+            this.lastSeq = since;
+        }
+
+        // Where the next delta should start: the seq of the last line, or since if nothing changed
+        public long getLastSeq() { return lastSeq; }
+        public int getUpserts() { return upserts; }
+        public int getDeletes() { return deletes; }
+
+        @Override
+        public String toString() {
+            return String.format("%,d changed, %,d deleted after change %d, up to change %d", upserts, deletes, since, lastSeq);
+        }
+    }
+
+    private ChangeExporter() {
+    }
+
+    public static Result export(Database db, long since, File file) throws SQLException, IOException {
+        Result result = new Result(since);
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            StringBuilder line = new StringBuilder(256); // reused for every line
+            db.forEachChangeSince(since, change -> {
+                line.setLength(0);
+                line.append(change.getSeq()).append(',')
+                        .append(change.isDeleted() ? "delete" : "upsert").append(',')
+                        .append(change.isIncome() ? "income" : "invoice").append(',')
+                        .append(change.getId());
+                ExcelExporter.FinancialEntry entry = change.getEntry();
+                if (entry == null) {
+                    line.append(",,,,,,,");
+                    result.deletes++;
+                } else {
+                    line.append(',').append(DayFormat.format(entry.getIssuedDate()))
+                            .append(',').append(Money.format(entry.getAmountCents()))
+                            .append(',').append(quote(entry.getParty()))
+                            .append(',').append(quote(entry.getCategory()))
+                            .append(',').append(quote(entry.getDescription()))
+                            .append(',').append(entry.isTaxIncluded() ? "yes" : "no")
+                            .append(',').append(entry.isNonTaxable() ? "yes" : "no");
+                    result.upserts++;
+                }
+                out.append(line);
+                out.newLine();
+                result.lastSeq = change.getSeq();
+            });
+        }
+        return result;
+    }
+
+    private static String quote(String text) {
+        return text == null ? "" : '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,506 @@
+package beans;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Command-line mode for scheduled reports, e.g. a month-end cron job.
+// Main hands over here whenever it gets arguments. Nothing on this path loads
+// AWT or Swing, so it starts quickly and runs on machines without a display.
+// Exit codes: 0 done, 1 a report or the database failed, 2 bad arguments.
+public class Cli {
+
+    static final int OK = 0;
+    static final int FAILED = 1;
+    static final int USAGE = 2;
+
+    private static final String USAGE_TEXT = String.join(System.lineSeparator(),
+            "usage:",
+            "  export --from <yyyy-mm-dd> --to <yyyy-mm-dd> --out <file.xlsx|file.xls> [--analytics yes|no]",
+            "      One report covering both dates. With --analytics yes it also gets monthly",
+            "      balances and deltas, top vendors / clients and category sheets.",
+            "  export-periods --from <yyyy-mm-dd> --to <yyyy-mm-dd> --period month|quarter|year --out-dir <dir>",
+            "                 [--name <prefix>] [--format xlsx|xls] [--threads <n>] [--analytics yes|no]",
+            "      One report per calendar period in the range, written in parallel",
+            "      as <dir>/<prefix>-2024-Q1.xlsx and so on.",
+            "  import --file <file.csv> [--rejects <file>] [--delimiter <char>] [--date-format <pattern>]",
+            "         [--create-missing yes|no] [--category <name>] [--threads <n>]",
+            "      Adds the invoices and incomes in a CSV or bank export (see CsvImporter for",
+            "      the columns). Bad lines go to the rejects file, <file>.rejects.csv by default.",
+            "  cashflow --from <yyyy-mm-dd> --to <yyyy-mm-dd>",
+            "      Money in and out over the range, the lowest running balance and the",
+            "      GST / QST to remit (collected on incomes minus paid on invoices).",
+            "  changes --out <file.csv> (--since <seq> | --state <file>)",
+            "      Every invoice and income changed or deleted after change number <seq>, to",
+            "      refresh a copy of the ledger. With --state the number is read from <file>",
+            "      (0 if it doesn't exist yet) and the new one saved there after the export.",
+            "  rebuild-totals",
+            "      Recomputes the monthly totals from the ledger.",
+            "options for every command:",
+            "  --db <file>     ledger to open (default invoices.db)",
+            "  --info <file>   report header (default " + ReportInfo.FILE_NAME + ")");
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    // Bad command lines are reported with this and exit with USAGE
+    private static final class UsageException extends Exception {
+        UsageException(String message) {
+            super(message);
+        }
+    }
+
+    private enum Period {
+        MONTH(1), QUARTER(3), YEAR(12);
+
+        final int months;
+
+        Period(int months) {
+            this.months = months;
+        }
+
+        // First day of the period holding date
+        LocalDate start(LocalDate date) {
+            int month = (date.getMonthValue() - 1) / months * months + 1;
+            return LocalDate.of(date.getYear(), month, 1);
+        }
+
+        String label(LocalDate start) {
+            switch (this) {
+                case MONTH: return String.format("%d-%02d", start.getYear(), start.getMonthValue());
+                case QUARTER: return start.getYear() + "-Q" + ((start.getMonthValue() - 1) / 3 + 1);
+                default: return String.valueOf(start.getYear());
+            }
+        }
+    }
+
+    public static int run(String[] args) {
+        return run(args, System.out, System.err);
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        // Belt and braces: nothing here should need a display
+        System.setProperty("java.awt.headless", "true");
+
+        if (args.length == 0 || args[0].equals("help") || args[0].equals("--help")) {
+            out.println(USAGE_TEXT);
+            return args.length == 0 ? USAGE : OK;
+        }
+        try {
+            Map<String, String> options = parseOptions(args);
+            switch (args[0]) {
+                case "export":
+                    return export(options, out, err);
+                case "export-periods":
+                    return exportPeriods(options, out, err);
+                case "import":
+                    return importCsv(options, out);
+                case "cashflow":
+                    return cashFlow(options, out);
+                case "changes":
+                    return changes(options, out);
+                case "rebuild-totals":
+                    return rebuildTotals(options, out);
+                default:
+                    throw new UsageException("Unknown command: " + args[0]);
+            }
+        } catch (UsageException e) {
+            err.println(e.getMessage());
+            err.println(USAGE_TEXT);
+            return USAGE;
+        } catch (SQLException | IOException e) {
+            err.println("Failed: " + e.getMessage());
+            return FAILED;
+        }
+    }
+
+    private static int export(Map<String, String> options, PrintStream out, PrintStream err)
+            throws UsageException, SQLException, IOException {
+        LocalDate[] range = range(options);
+        LocalDate from = range[0];
+        LocalDate to = range[1];
+        File file = new File(required(options, "out"));
+        boolean analytics = yesNo(options, "analytics");
+        Map<String, String> headerInfo = headerInfo(options);
+        checkUnused(options);
+
+        Database db = open(options, 1);
+        try {
+            return report(db, from, to, file, headerInfo, analytics, out, err) >= 0 ? OK : FAILED;
+        } finally {
+            db.close();
+        }
+    }
+
+    private static int exportPeriods(Map<String, String> options, PrintStream out, PrintStream err)
+            throws UsageException, SQLException, IOException {
+        LocalDate[] range = range(options);
+        LocalDate from = range[0];
+        LocalDate to = range[1];
+        Period period = period(options);
+        File dir = new File(required(options, "out-dir"));
+        String name = optional(options, "name", "report");
+        String format = optional(options, "format", "xlsx");
+        if (!format.equals("xlsx") && !format.equals("xls")) {
+            throw new UsageException("--format must be xlsx or xls");
+        }
+        int threads = number(options, "threads", Runtime.getRuntime().availableProcessors());
+        boolean analytics = yesNo(options, "analytics");
+        Map<String, String> headerInfo = headerInfo(options);
+        checkUnused(options);
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create " + dir);
+        }
+
+        // One reader per thread, so no report waits for a connection
+        Database db = open(options, threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long started = System.nanoTime();
+        int failures = 0;
+        long rows = 0;
+        int reports = 0;
+        Throwable unexpected = null;
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (LocalDate start = period.start(from); !start.isAfter(to); start = start.plusMonths(period.months)) {
+                // The first and last periods are cut to the requested range
+                LocalDate first = start.isBefore(from) ? from : start;
+                LocalDate end = start.plusMonths(period.months).minusDays(1);
+                LocalDate last = end.isAfter(to) ? to : end;
+                File file = new File(dir, name + "-" + period.label(start) + "." + format);
+                results.add(pool.submit(() -> report(db, first, last, file, headerInfo, analytics, out, err)));
+            }
+            // Every outcome is collected, so the other reports finish even if one blew up
+            for (Future<Integer> result : results) {
+                int written;
+                try {
+                    written = result.get();
+                } catch (ExecutionException e) {
+                    // report() turns report errors into -1; anything else is a bug, raised once all are done
+                    if (unexpected == null) {
+                        unexpected = e.getCause();
+                    } else {
+                        unexpected.addSuppressed(e.getCause());
+                    }
+                    failures++;
+                    continue;
+                }
+                if (written < 0) {
+                    failures++;
+                } else {
+                    rows += written;
+                    reports++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } finally {
+            // No report may still be using the database when it closes
+            pool.shutdownNow();
+            awaitTermination(pool);
+            db.close();
+        }
+        if (unexpected != null) {
+            throw new IOException(unexpected);
+        }
+
+        out.printf("%d reports, %,d rows in %.1f s%n", reports, rows, (System.nanoTime() - started) / 1e9);
+        if (failures > 0) {
+            err.println(failures + " reports failed");
+            return FAILED;
+        }
+        return OK;
+    }
+
+    // Waits for every task on pool to end, even if this thread gets interrupted meanwhile
+    private static void awaitTermination(ExecutorService pool) {
+        boolean interrupted = Thread.interrupted();
+        while (true) {
+            try {
+                if (pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int importCsv(Map<String, String> options, PrintStream out)
+            throws UsageException, SQLException, IOException {
+        File file = new File(required(options, "file"));
+        File rejects = new File(optional(options, "rejects", file.getPath() + ".rejects.csv"));
+        String delimiter = optional(options, "delimiter", ",");
+        if (delimiter.length() != 1) {
+            throw new UsageException("--delimiter must be one character");
+        }
+        String datePattern = optional(options, "date-format", null);
+        boolean createMissing = yesNo(options, "create-missing");
+        String category = optional(options, "category", null);
+        int threads = number(options, "threads", Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        checkUnused(options);
+        if (!file.isFile()) {
+            throw new UsageException("No such file: " + file);
+        }
+
+        Database db = open(options, 1);
+        try {
+            LookupCache lookups = new LookupCache(db);
+            lookups.load();
+            CsvImporter importer = new CsvImporter(db, lookups)
+                    .delimiter(delimiter.charAt(0))
+                    .createMissing(createMissing)
+                    .defaultCategory(category)
+                    .threads(threads);
+            if (datePattern != null) {
+                try {
+                    importer.datePattern(datePattern);
+                } catch (IllegalArgumentException e) {
+                    throw new UsageException("Bad --date-format: " + e.getMessage());
+                }
+            }
+            CsvImporter.Result result = importer.importFile(file, rejects);
+            out.println(result);
+            if (result.getRejected() > 0) {
+                out.println("Rejected lines are in " + rejects);
+            }
+        } finally {
+            db.close();
+        }
+        return OK;
+    }
+
+    private static int cashFlow(Map<String, String> options, PrintStream out)
+            throws UsageException, SQLException {
+        LocalDate[] range = range(options);
+        checkUnused(options);
+        long fromTs = range[0].atStartOfDay(ZONE).toInstant().toEpochMilli();
+        long toTs = range[1].plusDays(1).atStartOfDay(ZONE).toInstant().toEpochMilli() - 1;
+
+        Database db = open(options, 1);
+        CashFlow flow;
+        try {
+            flow = CashFlow.of(db, fromTs, toTs);
+        } finally {
+            db.close();
+        }
+        out.printf("%s to %s: %,d incomes, %,d invoices%n", range[0], range[1],
+                flow.getIn().getCount(), flow.getOut().getCount());
+        out.printf("  In          %14s%n", Money.format(flow.getIn().getTotal()));
+        out.printf("  Out         %14s%n", Money.format(flow.getOut().getTotal()));
+        out.printf("  Net         %14s%n", Money.format(flow.getNetCents()));
+        if (flow.getLowestBalanceCents() < 0) {
+            out.printf("  Lowest      %14s on %s%n", Money.format(flow.getLowestBalanceCents()),
+                    DayFormat.format(flow.getLowestBalanceDate()));
+        }
+        out.printf("  GST to remit %13s (collected %s, paid %s)%n", Money.format(flow.getGstRemittanceCents()),
+                Money.format(flow.getIn().getGst()), Money.format(flow.getOut().getGst()));
+        out.printf("  QST to remit %13s (collected %s, paid %s)%n", Money.format(flow.getQstRemittanceCents()),
+                Money.format(flow.getIn().getQst()), Money.format(flow.getOut().getQst()));
+        return OK;
+    }
+
+    private static int changes(Map<String, String> options, PrintStream out)
+            throws UsageException, SQLException, IOException {
+        File file = new File(required(options, "out"));
+        String sinceOption = optional(options, "since", null);
+        String stateOption = optional(options, "state", null);
+        checkUnused(options);
+        if ((sinceOption == null) == (stateOption == null)) {
+            throw new UsageException("Give one of --since and --state");
+        }
+        File state = stateOption != null ? new File(stateOption) : null;
+        String sinceText = state == null ? sinceOption
+                : state.exists() ? new String(Files.readAllBytes(state.toPath()), StandardCharsets.UTF_8).trim() : "0";
+        long since;
+        try {
+            since = Long.parseLong(sinceText);
+        } catch (NumberFormatException e) {
+            throw new UsageException((state == null ? "--since" : state.toString()) + " must hold a change number, got " + sinceText);
+        }
+
+        Database db = open(options, 1);
+        ChangeExporter.Result result;
+        try {
+            result = ChangeExporter.export(db, since, file);
+        } finally {
+            db.close();
+        }
+        if (state != null) {
+            Files.write(state.toPath(), (result.getLastSeq() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        }
+        out.println(file + ": " + result);
+        return OK;
+    }
+
+    private static int rebuildTotals(Map<String, String> options, PrintStream out)
+            throws UsageException, SQLException {
+        checkUnused(options);
+        Database db = open(options, 1);
+        try {
+            db.rebuildMonthlyTotals();
+        } finally {
+            db.close();
+        }
+        out.println("Monthly totals rebuilt");
+        return OK;
+    }
+
+    // Writes one report and returns its row count, or -1 after reporting why it failed.
+    // A failed report's half-written file is deleted.
+    private static int report(Database db, LocalDate from, LocalDate to, File file, Map<String, String> headerInfo,
+            boolean analytics, PrintStream out, PrintStream err) {
+        long fromTs = from.atStartOfDay(ZONE).toInstant().toEpochMilli();
+        long toTs = to.plusDays(1).atStartOfDay(ZONE).toInstant().toEpochMilli() - 1;
+        int[] rows = new int[1];
+        try {
+            ReportWriter writer = ReportWriter.open(file, headerInfo, ParallelRows.defaultExecutor());
+            ExcelExporter.exportReport(db, fromTs, toTs, analytics, new ReportWriter() {
+                @Override
+                public void writeInvoice(Invoice invoice) throws IOException {
+                    writer.writeInvoice(invoice);
+                    rows[0]++;
+                }
+
+                @Override
+                public void writeIncome(Income income) throws IOException {
+                    writer.writeIncome(income);
+                    rows[0]++;
+                }
+
+                @Override
+                public void addSheet(ReportSheet sheet) throws IOException {
+                    writer.addSheet(sheet);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    writer.close();
+                }
+            });
+        } catch (SQLException | IOException | RuntimeException e) {
+            file.delete();
+            err.println(file + ": " + e);
+            return -1;
+        }
+        out.printf("%s: %,d rows (%s to %s)%n", file, rows[0], from, to);
+        return rows[0];
+    }
+
+    private static Database open(Map<String, String> options, int readers) throws SQLException {
+        String file = options.getOrDefault("db", "invoices.db");
+        options.remove("db");
+        return new Database("jdbc:sqlite:" + file, StorageProfile.load(), Math.max(1, readers));
+    }
+
+    private static Map<String, String> headerInfo(Map<String, String> options) throws IOException {
+        return ReportInfo.load(new File(optional(options, "info", ReportInfo.FILE_NAME)));
+    }
+
+    // --name value pairs after the command
+    private static Map<String, String> parseOptions(String[] args) throws UsageException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new UsageException("Expected --option value, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    // Options are removed as they are read, so whatever is left was never asked for.
+    // --db is read last, when the database opens, so it is allowed here.
+    private static void checkUnused(Map<String, String> options) throws UsageException {
+        for (String key : options.keySet()) {
+            if (!key.equals("db")) {
+                throw new UsageException("Unknown option --" + key);
+            }
+        }
+    }
+
+    private static String required(Map<String, String> options, String key) throws UsageException {
+        String value = options.remove(key);
+        if (value == null || value.isEmpty()) {
+            throw new UsageException("Missing --" + key);
+        }
+        return value;
+    }
+
+    private static String optional(Map<String, String> options, String key, String fallback) {
+        String value = options.remove(key);
+        return value == null || value.isEmpty() ? fallback : value;
+    }
+
+    // --from and --to, checked to be in order
+    private static LocalDate[] range(Map<String, String> options) throws UsageException {
+        LocalDate from = date(options, "from");
+        LocalDate to = date(options, "to");
+        if (to.isBefore(from)) {
+            throw new UsageException("--to is before --from");
+        }
+        return new LocalDate[] { from, to };
+    }
+
+    private static LocalDate date(Map<String, String> options, String key) throws UsageException {
+        String value = required(options, key);
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new UsageException("--" + key + " must be a date like 2024-03-31, got " + value);
+        }
+    }
+
+    private static int number(Map<String, String> options, String key, int fallback) throws UsageException {
+        String value = options.remove(key);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            int n = Integer.parseInt(value);
+            if (n < 1) {
+                throw new NumberFormatException();
+            }
+            return n;
+        } catch (NumberFormatException e) {
+            throw new UsageException("--" + key + " must be a positive number, got " + value);
+        }
+    }
+
+    private static boolean yesNo(Map<String, String> options, String key) throws UsageException {
+        String value = optional(options, key, "no");
+        switch (value.toLowerCase()) {
+            case "yes": return true;
+            case "no": return false;
+            default: throw new UsageException("--" + key + " must be yes or no, got " + value);
+        }
+    }
+
+    private static Period period(Map<String, String> options) throws UsageException {
+        String value = required(options, "period");
+        try {
+            return Period.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new UsageException("--period must be month, quarter or year, got " + value);
+        }
+    }
+}
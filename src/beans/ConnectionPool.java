@@ -0,0 +1,155 @@
+package beans;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Connections to one ledger file: a single writer plus a fixed set of readers.
+// SQLite allows one writer at a time anyway, so writes queue on a lock for the
+// writer connection; in WAL mode the readers keep reading committed data while
+// it writes. Every connection is used by one thread at a time and keeps its own
+// prepared-statement cache.
+public class ConnectionPool {
+
+    // How long a reader request waits for a free connection before failing
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+
+    // One JDBC connection and the statements prepared on it
+    public static class PooledConnection {
+        private final Connection conn;
+        private final Map<String, PreparedStatement> statementCache = new HashMap<>();
+
+        private PooledConnection(Connection conn) {
+            this.conn = conn;
+        }
+
+        public Connection getConnection() {
+            return conn;
+        }
+
+        // Statements are prepared once per connection and reused on every call
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement pstmt = statementCache.get(sql);
+            if (pstmt == null) {
+                pstmt = conn.prepareStatement(sql);
+                statementCache.put(sql, pstmt);
+            }
+            return pstmt;
+        }
+
+        private void close() throws SQLException {
+            for (PreparedStatement pstmt : statementCache.values()) {
+                pstmt.close();
+            }
+            statementCache.clear();
+            conn.close();
+        }
+    }
+
+    private final PooledConnection writer;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final List<PooledConnection> readers = new ArrayList<>();
+    private final BlockingQueue<PooledConnection> idleReaders = new LinkedBlockingQueue<>();
+
+    // Opens only the writer; call openReaders() once the schema is in place
+    public ConnectionPool(String url, StorageProfile profile) throws SQLException {
+        writer = open(url, profile);
+    }
+
+    // Readers are opened query_only so a stray write on one fails instead of
+    // taking the write lock behind the writer's back. In-memory databases are
+    // private to their connection, so they never get readers.
+    public void openReaders(String url, StorageProfile profile, int count) throws SQLException {
+        if (url.contains(":memory:") || url.contains("mode=memory")) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            PooledConnection reader = open(url, profile);
+            try (Statement stmt = reader.conn.createStatement()) {
+                stmt.execute("PRAGMA query_only = ON");
+            }
+            readers.add(reader);
+            idleReaders.add(reader);
+        }
+    }
+
+    private static PooledConnection open(String url, StorageProfile profile) throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        profile.apply(conn);
+        // SQLite leaves REFERENCES unchecked unless asked, per connection
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA foreign_keys = ON");
+        }
+        return new PooledConnection(conn);
+    }
+
+    // Blocks until no other thread is writing. The lock is reentrant, so a
+    // write may call other writes. Pair every call with releaseWriter().
+    public PooledConnection acquireWriter() {
+        writeLock.lock();
+        return writer;
+    }
+
+    public void releaseWriter() {
+        writeLock.unlock();
+    }
+
+    // Borrows an idle reader. Without readers, reads share the writer and its lock.
+    public PooledConnection acquireReader() throws SQLException {
+        if (readers.isEmpty()) {
+            return acquireWriter();
+        }
+        try {
+            PooledConnection reader = idleReaders.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (reader == null) {
+                throw new SQLException("No reader connection came free within " + ACQUIRE_TIMEOUT_SECONDS + " s");
+            }
+            return reader;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a reader connection", e);
+        }
+    }
+
+    public void releaseReader(PooledConnection reader) {
+        if (reader == writer) {
+            releaseWriter();
+        } else {
+            idleReaders.add(reader);
+        }
+    }
+
+    // Closes every connection. Callers must have stopped using the pool.
+    public void close() throws SQLException {
+        SQLException failure = null;
+        for (PooledConnection reader : readers) {
+            try {
+                reader.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        readers.clear();
+        idleReaders.clear();
+
+        writeLock.lock();
+        try {
+            writer.close();
+        } finally {
+            writeLock.unlock();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
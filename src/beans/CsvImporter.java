@@ -0,0 +1,484 @@
+package beans;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+// Bulk import of invoices and incomes from a CSV file, e.g. a bank export.
+//
+// The first line names the columns, in any order and letter case:
+//   date         required, in datePattern (yyyy-MM-dd by default)
+//   amount       required; "(12.50)" counts as negative
+//   party        required; vendor, client, payee or name also work
+//   category     required unless defaultCategory() is set
+//   type         invoice/expense or income; without it, negative amounts are
+//                invoices (money out) and positive ones incomes, as in a bank statement
+//   description, tax_included, non_taxable   optional (yes/no, true/false, 1/0)
+// Other columns are ignored.
+//
+// One thread reads the file in chunks of CHUNK_LINES lines, worker threads
+// parse and check them, and the calling thread writes them to the database in
+// file order, one transaction per chunk. Only a few chunks per worker are in
+// flight at once, so memory stays flat however long the file is.
+//
+// Vendors, clients and categories are matched against the lookup lists
+// ignoring case and repeated spaces, and stored with the list's spelling.
+// Unknown names are rejected unless createMissing() is on. Rejected lines go
+// to the rejects file: the header plus a reject_reason column, then each bad
+// line as it was with the reason appended. Fix it and import it again as is.
+public class CsvImporter {
+
+    private static final int CHUNK_LINES = 5000;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private final Database db;
+    private final LookupCache lookups;
+    private char delimiter = ',';
+    private DateTimeFormatter dateFormat = DateTimeFormatter.ISO_LOCAL_DATE;
+    private boolean createMissing;
+    private String defaultCategory;
+    private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    // lookups must be loaded; names created by the import are added to it
+    public CsvImporter(Database db, LookupCache lookups) {
+        this.db = db;
+        this.lookups = lookups;
+    }
+
+    public CsvImporter delimiter(char delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    // DateTimeFormatter pattern of the date column, e.g. dd/MM/yyyy
+    public CsvImporter datePattern(String pattern) {
+        this.dateFormat = DateTimeFormatter.ofPattern(pattern, Locale.ROOT);
+        return this;
+    }
+
+    // Add vendors, clients and categories that aren't in the lists instead of rejecting their lines
+    public CsvImporter createMissing(boolean createMissing) {
+        this.createMissing = createMissing;
+        return this;
+    }
+
+    // Category for files without a category column, or lines with it blank
+    public CsvImporter defaultCategory(String category) {
+        this.defaultCategory = category;
+        return this;
+    }
+
+    // Parsing threads; the file is read and the database written on two more
+    public CsvImporter threads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread");
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    // Lines that were read together, and later what they parsed to
+    private static final class Chunk {
+        final int seq;
+        final long firstLine; // 1-based line number in the file
+        final List<String> lines;
+        final List<Invoice> invoices = new ArrayList<>();
+        final List<Income> incomes = new ArrayList<>();
+        final List<String> rejects = new ArrayList<>();
+        Exception failure; // set on the chunk that ends a failed read or parse
+
+        Chunk(int seq, long firstLine, List<String> lines) {
+            this.seq = seq;
+            this.firstLine = firstLine;
+            this.lines = lines;
+        }
+    }
+
+    // Column positions found in the header line; -1 when absent
+    private static final class Columns {
+        int date = -1, amount = -1, party = -1, category = -1, type = -1, description = -1,
+                taxIncluded = -1, nonTaxable = -1;
+    }
+
+    // Imports file, writing rejected lines to rejectsFile (created even if nothing is rejected).
+    // A database or file error stops the import; the chunks inserted before it stay.
+    public Result importFile(File file, File rejectsFile) throws IOException, SQLException {
+        long started = System.nanoTime();
+
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+                BufferedWriter rejects = Files.newBufferedWriter(rejectsFile.toPath(), StandardCharsets.UTF_8)) {
+            String header = in.readLine();
+            if (header == null) {
+                throw new IOException(file + " is empty");
+            }
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1); // byte order mark left by spreadsheet exports
+            }
+            Columns columns = mapColumns(header);
+            rejects.write(header + delimiter + "reject_reason");
+            rejects.newLine();
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads + 1, r -> {
+                Thread thread = new Thread(r, "csv-import");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                return run(in, columns, rejects, pool, started, file);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private Result run(BufferedReader in, Columns columns, BufferedWriter rejects, ExecutorService pool, long started,
+            File file) throws IOException, SQLException {
+        Chunk end = new Chunk(-1, 0, null); // end of file, or of a failed read
+        BlockingQueue<Chunk> read = new LinkedBlockingQueue<>();
+        BlockingQueue<Chunk> parsed = new LinkedBlockingQueue<>();
+        Semaphore inFlight = new Semaphore(threads * CHUNKS_PER_THREAD);
+
+        AtomicInteger chunkCount = new AtomicInteger(-1); // set by the reader once it hits the end
+        pool.execute(() -> {
+            int seq = 0;
+            long lineNumber = 1;
+            try {
+                List<String> lines = new ArrayList<>(CHUNK_LINES);
+                String line;
+                while ((line = in.readLine()) != null) {
+                    lines.add(line);
+                    if (lines.size() == CHUNK_LINES) {
+                        inFlight.acquire();
+                        read.put(new Chunk(seq++, lineNumber + 1, lines));
+                        lineNumber += lines.size();
+                        lines = new ArrayList<>(CHUNK_LINES);
+                    }
+                }
+                if (!lines.isEmpty()) {
+                    inFlight.acquire();
+                    read.put(new Chunk(seq++, lineNumber + 1, lines));
+                }
+            } catch (IOException e) {
+                end.failure = e;
+            } catch (InterruptedException e) {
+                return; // import abandoned
+            }
+            chunkCount.set(seq);
+            for (int i = 0; i < threads; i++) {
+                read.add(end);
+            }
+            parsed.add(end);
+        });
+        for (int i = 0; i < threads; i++) {
+            pool.execute(() -> {
+                try {
+                    for (Chunk chunk = read.take(); chunk != end; chunk = read.take()) {
+                        try {
+                            parse(chunk, columns);
+                        } catch (RuntimeException e) {
+                            chunk.failure = e;
+                        }
+                        parsed.add(chunk);
+                    }
+                } catch (InterruptedException e) {
+                    // import abandoned
+                }
+            });
+        }
+
+        // Chunks come back in any order; write them in file order
+        Result result = new Result();
+        Map<Integer, Chunk> waiting = new HashMap<>();
+        int next = 0;
+        while (true) {
+            int total = chunkCount.get();
+            if (total >= 0 && next == total && end.failure == null) {
+                break;
+            }
+            Chunk chunk = waiting.remove(next);
+            if (chunk == null) {
+                Chunk arrived = take(parsed);
+                if (arrived == end) {
+                    if (end.failure != null) {
+                        throw new IOException("Reading " + file + " failed", end.failure);
+                    }
+                } else {
+                    waiting.put(arrived.seq, arrived);
+                }
+                continue;
+            }
+            if (chunk.failure != null) {
+                throw new IOException("Parsing lines from " + chunk.firstLine + " failed", chunk.failure);
+            }
+            store(chunk, rejects, result);
+            inFlight.release();
+            next++;
+        }
+        result.nanos = System.nanoTime() - started;
+        return result;
+    }
+
+    // Runs on a worker: fills chunk's invoices, incomes and rejects from its lines
+    private void parse(Chunk chunk, Columns columns) {
+        long lineNumber = chunk.firstLine;
+        for (String line : chunk.lines) {
+            try {
+                if (!line.trim().isEmpty()) {
+                    parseLine(split(line), columns, chunk);
+                }
+            } catch (IllegalArgumentException | ArithmeticException | java.time.DateTimeException e) {
+                chunk.rejects.add(line + delimiter + quote("line " + lineNumber + ": " + e.getMessage()));
+            }
+            lineNumber++;
+        }
+    }
+
+    private void parseLine(String[] fields, Columns columns, Chunk chunk) {
+        LocalDate date = LocalDate.parse(field(fields, columns.date, "date"), dateFormat);
+        long issuedDate = date.atStartOfDay(ZONE).toInstant().toEpochMilli();
+        Money amount = parseAmount(field(fields, columns.amount, "amount"));
+
+        boolean income;
+        String type = optionalField(fields, columns.type);
+        if (type == null) {
+            income = amount.getCents() > 0;
+            amount = Money.ofCents(Math.abs(amount.getCents()));
+        } else {
+            switch (type.toLowerCase(Locale.ROOT)) {
+                case "invoice":
+                case "expense":
+                    income = false;
+                    break;
+                case "income":
+                    income = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("type must be invoice, expense or income, not " + type);
+            }
+        }
+
+        String category = optionalField(fields, columns.category);
+        if (category == null) {
+            category = defaultCategory;
+        }
+        if (category == null) {
+            throw new IllegalArgumentException("missing category");
+        }
+        category = known(lookups.getCategories(), category, "category");
+        String party = known(income ? lookups.getClients() : lookups.getVendors(),
+                field(fields, columns.party, "party"), income ? "client" : "vendor");
+        String description = optionalField(fields, columns.description);
+        boolean taxIncluded = flag(optionalField(fields, columns.taxIncluded), true);
+        boolean nonTaxable = flag(optionalField(fields, columns.nonTaxable), false);
+
+        if (income) {
+            chunk.incomes.add(new Income(0, party, category, issuedDate, description, amount, taxIncluded, nonTaxable));
+        } else {
+            chunk.invoices.add(new Invoice(0, party, category, issuedDate, description, amount, taxIncluded, nonTaxable));
+        }
+    }
+
+    // The list's spelling of name. Unknown names pass through (tidied) if they may be created.
+    private String known(LookupList list, String name, String what) {
+        String tidy = SPACES.matcher(name.trim()).replaceAll(" ");
+        String found = list.find(tidy);
+        if (found != null) {
+            return found;
+        }
+        if (!createMissing) {
+            throw new IllegalArgumentException("unknown " + what + " " + tidy);
+        }
+        return tidy;
+    }
+
+    // Runs on the calling thread, in file order
+    private void store(Chunk chunk, BufferedWriter rejects, Result result) throws IOException, SQLException {
+        if (createMissing) {
+            // Two lines can bring in the same new name in different letter case; the first one wins
+            for (Invoice invoice : chunk.invoices) {
+                invoice.setVendor(create(lookups.getVendors(), invoice.getVendor(), lookups::addVendor));
+                invoice.setCategory(create(lookups.getCategories(), invoice.getCategory(), lookups::addCategory));
+            }
+            for (Income income : chunk.incomes) {
+                income.setClient(create(lookups.getClients(), income.getClient(), lookups::addClient));
+                income.setCategory(create(lookups.getCategories(), income.getCategory(), lookups::addCategory));
+            }
+        }
+        db.insertEntries(chunk.invoices, chunk.incomes);
+        for (String reject : chunk.rejects) {
+            rejects.write(reject);
+            rejects.newLine();
+        }
+        result.lines += chunk.lines.size();
+        result.invoices += chunk.invoices.size();
+        result.incomes += chunk.incomes.size();
+        result.rejected += chunk.rejects.size();
+    }
+
+    private interface NameAdder {
+        boolean add(String name) throws SQLException;
+    }
+
+    private static String create(LookupList list, String name, NameAdder adder) throws SQLException {
+        String found = list.find(name);
+        if (found != null) {
+            return found;
+        }
+        adder.add(name);
+        return name;
+    }
+
+    private Columns mapColumns(String header) throws IOException {
+        Columns columns = new Columns();
+        String[] names = split(header);
+        for (int i = 0; i < names.length; i++) {
+            switch (names[i].trim().toLowerCase(Locale.ROOT).replace(' ', '_')) {
+                case "date": columns.date = i; break;
+                case "amount": columns.amount = i; break;
+                case "party":
+                case "vendor":
+                case "client":
+                case "payee":
+                case "name": columns.party = i; break;
+                case "category": columns.category = i; break;
+                case "type": columns.type = i; break;
+                case "description": columns.description = i; break;
+                case "tax_included": columns.taxIncluded = i; break;
+                case "non_taxable": columns.nonTaxable = i; break;
+                default: break; // not ours
+            }
+        }
+        if (columns.date < 0 || columns.amount < 0 || columns.party < 0) {
+            throw new IOException("The header needs date, amount and party (or vendor/client/payee) columns: " + header);
+        }
+        if (columns.category < 0 && defaultCategory == null) {
+            throw new IOException("The header has no category column and no default category was given");
+        }
+        return columns;
+    }
+
+    // One CSV line. Quoted fields may hold the delimiter and "" for a quote,
+    // but not line breaks.
+    private String[] split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch != '"') {
+                    field.append(ch);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quote");
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    private static String field(String[] fields, int column, String name) {
+        String value = optionalField(fields, column);
+        if (value == null) {
+            throw new IllegalArgumentException("missing " + name);
+        }
+        return value;
+    }
+
+    // Trimmed value, or null when the column is absent or blank
+    private static String optionalField(String[] fields, int column) {
+        if (column < 0 || column >= fields.length) {
+            return null;
+        }
+        String value = fields[column].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Money parseAmount(String text) {
+        if (text.startsWith("(") && text.endsWith(")")) {
+            return Money.ofCents(-Money.parse(text.substring(1, text.length() - 1)).getCents());
+        }
+        return Money.parse(text);
+    }
+
+    private static boolean flag(String value, boolean fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "yes": case "y": case "true": case "1": return true;
+            case "no": case "n": case "false": case "0": return false;
+            default: throw new IllegalArgumentException("expected yes or no, not " + value);
+        }
+    }
+
+    private static String quote(String text) {
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    private static Chunk take(BlockingQueue<Chunk> queue) throws InterruptedIOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        }
+    }
+
+    // Counts of one import, and how fast it went
+    public static final class Result {
+        private long lines;
+        private long invoices;
+        private long incomes;
+        private long rejected;
+        private long nanos;
+
+        public long getLines() { return lines; }
+        public long getInvoices() { return invoices; }
+        public long getIncomes() { return incomes; }
+        public long getRejected() { return rejected; }
+        public long getNanos() { return nanos; }
+
+        @Override
+        public String toString() {
+            double seconds = nanos / 1e9;
+            return String.format("%,d lines in %.1f s (%,.0f lines/s): %,d invoices and %,d incomes imported, %,d rejected",
+                    lines, seconds, lines / Math.max(seconds, 1e-9), invoices, incomes, rejected);
+        }
+    }
+}
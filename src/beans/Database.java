@@ -0,0 +1,1442 @@
+// Database implementation for managing invoices
+// C:\countBeans\beans\Database.java
+
+package beans;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+public class Database {
+
+    private static final String DB_URL = "jdbc:sqlite:invoices.db";
+
+    // Stored in PRAGMA user_version. Bump it when adding a step to migrate().
+    private static final int SCHEMA_VERSION = 6;
+
+    private static final String INSERT_INVOICE_SQL = "INSERT INTO invoices (vendor_id, category_id, issued_date, description, amount_cents, tax_included, non_taxable) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_INVOICE_SQL = "UPDATE invoices SET vendor_id=?, category_id=?, issued_date=?, description=?, amount_cents=?, tax_included=?, non_taxable=? WHERE id=?";
+    private static final String DELETE_INVOICE_SQL = "DELETE FROM invoices WHERE id=?";
+    private static final String INSERT_INCOME_SQL = "INSERT INTO income_invoices (client_id, category_id, issued_date, description, amount_cents, tax_included, non_taxable) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_INCOME_SQL = "UPDATE income_invoices SET client_id=?, category_id=?, issued_date=?, description=?, amount_cents=?, tax_included=?, non_taxable=? WHERE id=?";
+    private static final String DELETE_INCOME_SQL = "DELETE FROM income_invoices WHERE id=?";
+
+    // Index the rows of one bulk insert batch, ids ? to ?, for search(); see migrateToV5()
+    private static final String INDEX_INVOICES_SQL = "INSERT INTO ledger_search (rowid, description, party, category, issued_date) " +
+            "SELECT l.id * 2, l.description, p.name, c.name, l.issued_date FROM invoices l " +
+            "JOIN vendors p ON p.id = l.vendor_id JOIN categories c ON c.id = l.category_id WHERE l.id BETWEEN ? AND ?";
+    private static final String INDEX_INCOMES_SQL = "INSERT INTO ledger_search (rowid, description, party, category, issued_date) " +
+            "SELECT l.id * 2 + 1, l.description, p.name, c.name, l.issued_date FROM income_invoices l " +
+            "JOIN clients p ON p.id = l.client_id JOIN categories c ON c.id = l.category_id WHERE l.id BETWEEN ? AND ?";
+
+    // Both ledgers as one stream in (issued_date, id) order, kind 0 for invoices and 1 for
+    // incomes. Each side walks its own issued_date index and SQLite merges the two cursors
+    // as it goes (MERGE (UNION ALL) in the query plan): no sort, no temp table.
+    private static final String ENTRIES_SQL = "SELECT 0 AS kind, id, vendor_id AS party_id, category_id, " +
+            "issued_date, description, amount_cents, tax_included, non_taxable FROM invoices WHERE issued_date BETWEEN ? AND ? " +
+            "UNION ALL SELECT 1, id, client_id, category_id, issued_date, description, amount_cents, tax_included, non_taxable " +
+            "FROM income_invoices WHERE issued_date BETWEEN ? AND ? ORDER BY issued_date, id, kind";
+
+    // ENTRIES_SQL without the columns forEachEntryRow() doesn't hand out
+    private static final String ENTRY_ROWS_SQL = "SELECT 0 AS kind, id, vendor_id, category_id, issued_date, " +
+            "amount_cents, tax_included, non_taxable FROM invoices WHERE issued_date BETWEEN ? AND ? " +
+            "UNION ALL SELECT 1, id, client_id, category_id, issued_date, amount_cents, tax_included, non_taxable " +
+            "FROM income_invoices WHERE issued_date BETWEEN ? AND ? ORDER BY issued_date, id, kind";
+
+    // The entries changed after seq ?, each once, in the order of its latest change, with
+    // its row as it is now; columns as readEntry() expects, plus seq and deleted
+    private static final String CHANGES_SQL = "SELECT c.seq, c.ledger AS kind, c.entry_id AS id, l.id IS NULL AS deleted, " +
+            "l.vendor_id AS party_id, l.category_id, l.issued_date, l.description, l.amount_cents, l.tax_included, l.non_taxable " +
+            "FROM (SELECT ledger, entry_id, max(seq) AS seq FROM ledger_changes WHERE seq > ?1 GROUP BY ledger, entry_id) c " +
+            "LEFT JOIN invoices l ON l.id = c.entry_id WHERE c.ledger = 0 " +
+            "UNION ALL SELECT c.seq, c.ledger, c.entry_id, l.id IS NULL, " +
+            "l.client_id, l.category_id, l.issued_date, l.description, l.amount_cents, l.tax_included, l.non_taxable " +
+            "FROM (SELECT ledger, entry_id, max(seq) AS seq FROM ledger_changes WHERE seq > ?1 GROUP BY ledger, entry_id) c " +
+            "LEFT JOIN income_invoices l ON l.id = c.entry_id WHERE c.ledger = 1 " +
+            "ORDER BY seq";
+
+    // Ranking scores every match, so words common enough to match more rows than this
+    // aren't ranked; the most recently issued matches come back instead. Counting them
+    // takes a few ms.
+    private static final int MAX_RANKED_MATCHES = 10_000;
+    // Roughly where FTS5's unicode61 tokenizer splits words
+    private static final Pattern WORD_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Bound in place of a party or category id when the name isn't known, so the filter matches nothing
+    private static final int NO_ID = -1;
+
+    // Reader connections opened next to the writer; reports and table refreshes
+    // run on these in parallel while the writer keeps taking inserts
+    private static final int DEFAULT_READERS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private final ConnectionPool pool;
+    private final NameDictionary vendors = new NameDictionary("vendors");
+    private final NameDictionary clients = new NameDictionary("clients");
+    private final NameDictionary categories = new NameDictionary("categories");
+    private final MonthlyRollup rollup = new MonthlyRollup(TaxCalculator.DEFAULT, vendors, clients, categories); // used under the write lock
+    private final AtomicLong dataVersion = new AtomicLong(); // see getDataVersion()
+    private long lastDataVersionPragma; // under the write lock
+    private volatile int batchSize = 500;
+    private volatile int fetchSize = 1000;
+
+    public Database() throws SQLException {
+        this(DB_URL);
+    }
+
+    // Opens another ledger, e.g. a copy of the books or a throwaway test database
+    public Database(String url) throws SQLException {
+        this(url, StorageProfile.load());
+    }
+
+    public Database(String url, StorageProfile profile) throws SQLException {
+        this(url, profile, DEFAULT_READERS);
+    }
+
+    // Safe to share between threads: writes take turns on the one writer
+    // connection, reads borrow one of readerCount reader connections.
+    public Database(String url, StorageProfile profile, int readerCount) throws SQLException {
+        pool = new ConnectionPool(url, profile);
+        try {
+            ConnectionPool.PooledConnection writer = pool.acquireWriter();
+            try {
+                createTableIfNotExists(writer.getConnection());
+                migrate(writer);
+            } finally {
+                pool.releaseWriter();
+            }
+            pool.openReaders(url, profile, readerCount);
+        } catch (SQLException e) {
+            pool.close();
+            throw e;
+        }
+    }
+
+    private void createTableIfNotExists(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // Vendors table
+            String vendorTable = "CREATE TABLE IF NOT EXISTS vendors (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "name TEXT UNIQUE NOT NULL)";
+            stmt.execute(vendorTable);
+
+            // Categories table
+            String categoryTable = "CREATE TABLE IF NOT EXISTS categories (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "name TEXT UNIQUE NOT NULL)";
+            stmt.execute(categoryTable);
+
+            // Invoices table
+            String invoiceTable = "CREATE TABLE IF NOT EXISTS invoices (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "vendor TEXT NOT NULL, " +
+                    "category TEXT NOT NULL, " +
+                    "issued_date INTEGER NOT NULL, " + // UNIX timestamp
+                    "description TEXT, " +
+                    "amount REAL NOT NULL, " +
+                    "tax_included INTEGER NOT NULL, " +
+                    "non_taxable INTEGER NOT NULL DEFAULT 0)"; // <== added here
+            stmt.execute(invoiceTable);
+
+            // Clients table
+            String clientTable = "CREATE TABLE IF NOT EXISTS clients (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "name TEXT UNIQUE NOT NULL)";
+            stmt.execute(clientTable);
+
+            // Income table
+            String incomeTable = "CREATE TABLE IF NOT EXISTS income_invoices (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "client TEXT NOT NULL, " +
+                    "category TEXT NOT NULL, " +
+                    "issued_date INTEGER NOT NULL, " +
+                    "description TEXT, " +
+                    "amount REAL NOT NULL, " +
+                    "tax_included INTEGER NOT NULL, " +
+                    "non_taxable INTEGER NOT NULL DEFAULT 0)";
+            stmt.execute(incomeTable);
+
+        }
+    }
+
+    // SCHEMA MIGRATIONS
+    // createTableIfNotExists() lays down the original schema, then every step
+    // newer than the file's user_version runs once, in order, in one transaction.
+    private void migrate(ConnectionPool.PooledConnection writer) throws SQLException {
+        Connection conn = writer.getConnection();
+        int version = getSchemaVersion(conn);
+        if (version >= SCHEMA_VERSION) {
+            return;
+        }
+
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            if (version < 1) {
+                migrateToV1(stmt);
+            }
+            if (version < 2) {
+                migrateToV2(stmt);
+            }
+            if (version < 3) {
+                migrateToV3(stmt);
+            }
+            if (version < 4) {
+                migrateToV4(stmt);
+                rollup.rebuild(writer);
+            }
+            if (version < 5) {
+                migrateToV5(stmt);
+            }
+            if (version < 6) {
+                migrateToV6(stmt);
+            }
+            stmt.execute("PRAGMA user_version = " + SCHEMA_VERSION);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+
+        // Refresh planner statistics so the new indexes get picked up
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE");
+        }
+    }
+
+    private int getSchemaVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // v1: indexes for the filters fetchInvoices() / fetchIncomes() build.
+    // Every filter ends in an issued_date range, so the date is the trailing key.
+    private void migrateToV1(Statement stmt) throws SQLException {
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_invoices_issued_date ON invoices (issued_date)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_invoices_vendor_date ON invoices (vendor, issued_date)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_invoices_category_date ON invoices (category, issued_date)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_income_issued_date ON income_invoices (issued_date)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_income_client_date ON income_invoices (client, issued_date)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_income_category_date ON income_invoices (category, issued_date)");
+    }
+
+    // v2: amounts move from REAL dollars to INTEGER cents (amount_cents) so sums are exact.
+    // SQLite can't change a column's type, so both ledger tables are rebuilt.
+    private void migrateToV2(Statement stmt) throws SQLException {
+        rebuildTable(stmt, "invoices",
+                "CREATE TABLE invoices_new (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "vendor TEXT NOT NULL, " +
+                        "category TEXT NOT NULL, " +
+                        "issued_date INTEGER NOT NULL, " +
+                        "description TEXT, " +
+                        "amount_cents INTEGER NOT NULL, " +
+                        "tax_included INTEGER NOT NULL, " +
+                        "non_taxable INTEGER NOT NULL DEFAULT 0)",
+                "INSERT INTO invoices_new (id, vendor, category, issued_date, description, amount_cents, tax_included, non_taxable) " +
+                        "SELECT id, vendor, category, issued_date, description, CAST(ROUND(amount * 100) AS INTEGER), tax_included, non_taxable " +
+                        "FROM invoices");
+        rebuildTable(stmt, "income_invoices",
+                "CREATE TABLE income_invoices_new (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "client TEXT NOT NULL, " +
+                        "category TEXT NOT NULL, " +
+                        "issued_date INTEGER NOT NULL, " +
+                        "description TEXT, " +
+                        "amount_cents INTEGER NOT NULL, " +
+                        "tax_included INTEGER NOT NULL, " +
+                        "non_taxable INTEGER NOT NULL DEFAULT 0)",
+                "INSERT INTO income_invoices_new (id, client, category, issued_date, description, amount_cents, tax_included, non_taxable) " +
+                        "SELECT id, client, category, issued_date, description, CAST(ROUND(amount * 100) AS INTEGER), tax_included, non_taxable " +
+                        "FROM income_invoices");
+
+        // Dropping the old tables dropped their indexes too
+        migrateToV1(stmt);
+    }
+
+    // v3: ledger rows point at vendors / clients / categories by id instead of
+    // repeating the name, so rows and indexes shrink, filters and group-bys compare
+    // integers, and a rename is one row. Names still in use can no longer be
+    // deleted; they are archived (hidden from the lists) instead.
+    private void migrateToV3(Statement stmt) throws SQLException {
+        for (String table : new String[] { "vendors", "clients", "categories" }) {
+            stmt.execute("ALTER TABLE " + table + " ADD COLUMN archived INTEGER NOT NULL DEFAULT 0");
+        }
+        // Names the ledger uses but the lists lost (deleted, or never added) come back archived
+        stmt.execute("INSERT OR IGNORE INTO vendors (name, archived) SELECT DISTINCT vendor, 1 FROM invoices");
+        stmt.execute("INSERT OR IGNORE INTO clients (name, archived) SELECT DISTINCT client, 1 FROM income_invoices");
+        stmt.execute("INSERT OR IGNORE INTO categories (name, archived) " +
+                "SELECT category, 1 FROM invoices UNION SELECT category, 1 FROM income_invoices");
+
+        rebuildTable(stmt, "invoices",
+                "CREATE TABLE invoices_new (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "vendor_id INTEGER NOT NULL REFERENCES vendors (id), " +
+                        "category_id INTEGER NOT NULL REFERENCES categories (id), " +
+                        "issued_date INTEGER NOT NULL, " +
+                        "description TEXT, " +
+                        "amount_cents INTEGER NOT NULL, " +
+                        "tax_included INTEGER NOT NULL, " +
+                        "non_taxable INTEGER NOT NULL DEFAULT 0)",
+                "INSERT INTO invoices_new (id, vendor_id, category_id, issued_date, description, amount_cents, tax_included, non_taxable) " +
+                        "SELECT i.id, v.id, c.id, i.issued_date, i.description, i.amount_cents, i.tax_included, i.non_taxable " +
+                        "FROM invoices i JOIN vendors v ON v.name = i.vendor JOIN categories c ON c.name = i.category");
+        rebuildTable(stmt, "income_invoices",
+                "CREATE TABLE income_invoices_new (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "client_id INTEGER NOT NULL REFERENCES clients (id), " +
+                        "category_id INTEGER NOT NULL REFERENCES categories (id), " +
+                        "issued_date INTEGER NOT NULL, " +
+                        "description TEXT, " +
+                        "amount_cents INTEGER NOT NULL, " +
+                        "tax_included INTEGER NOT NULL, " +
+                        "non_taxable INTEGER NOT NULL DEFAULT 0)",
+                "INSERT INTO income_invoices_new (id, client_id, category_id, issued_date, description, amount_cents, tax_included, non_taxable) " +
+                        "SELECT i.id, p.id, c.id, i.issued_date, i.description, i.amount_cents, i.tax_included, i.non_taxable " +
+                        "FROM income_invoices i JOIN clients p ON p.name = i.client JOIN categories c ON c.name = i.category");
+
+        // Same indexes as v1, on the id columns
+        stmt.execute("CREATE INDEX idx_invoices_issued_date ON invoices (issued_date)");
+        stmt.execute("CREATE INDEX idx_invoices_vendor_date ON invoices (vendor_id, issued_date)");
+        stmt.execute("CREATE INDEX idx_invoices_category_date ON invoices (category_id, issued_date)");
+        stmt.execute("CREATE INDEX idx_income_issued_date ON income_invoices (issued_date)");
+        stmt.execute("CREATE INDEX idx_income_client_date ON income_invoices (client_id, issued_date)");
+        stmt.execute("CREATE INDEX idx_income_category_date ON income_invoices (category_id, issued_date)");
+    }
+
+    // v4: monthly_totals, the rollup MonthlyRollup keeps in step with every write.
+    // migrate() fills it from the ledger right after.
+    private void migrateToV4(Statement stmt) throws SQLException {
+        stmt.execute(MonthlyRollup.CREATE_TABLE_SQL);
+    }
+
+    // v6: ledger_changes, an append-only log of which invoice or income changed, for
+    // forEachChangeSince(). Triggers add a row for every insert, update and delete,
+    // and for every entry whose vendor / client or category gets renamed, since its
+    // exported form changes too. seq is AUTOINCREMENT, so it only ever goes up,
+    // even after the newest rows are deleted. Entries already in the ledger are
+    // logged as inserts, so changes since 0 are the whole ledger.
+    private void migrateToV6(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE ledger_changes (" +
+                "seq INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "ledger INTEGER NOT NULL," + // 0 invoices, 1 income_invoices
+                "entry_id INTEGER NOT NULL," +
+                "op TEXT NOT NULL," + // I, U or D
+                "changed_at INTEGER NOT NULL)"); // epoch milliseconds
+        String now = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+        String[][] ledgers = {
+                // table, party column, party table, ledger
+                { "invoices", "vendor_id", "vendors", "0" },
+                { "income_invoices", "client_id", "clients", "1" },
+        };
+        for (String[] l : ledgers) {
+            String table = l[0], partyColumn = l[1], partyTable = l[2], ledger = l[3];
+            String log = "INSERT INTO ledger_changes (ledger, entry_id, op, changed_at) VALUES (" + ledger + ", ";
+            stmt.execute("CREATE TRIGGER " + table + "_log_insert AFTER INSERT ON " + table + " BEGIN " +
+                    log + "new.id, 'I', " + now + "); END");
+            stmt.execute("CREATE TRIGGER " + table + "_log_update AFTER UPDATE ON " + table + " BEGIN " +
+                    log + "new.id, 'U', " + now + "); END");
+            stmt.execute("CREATE TRIGGER " + table + "_log_delete AFTER DELETE ON " + table + " BEGIN " +
+                    log + "old.id, 'D', " + now + "); END");
+            stmt.execute("CREATE TRIGGER " + partyTable + "_log_rename AFTER UPDATE OF name ON " + partyTable + " BEGIN " +
+                    "INSERT INTO ledger_changes (ledger, entry_id, op, changed_at) " +
+                    "SELECT " + ledger + ", id, 'U', " + now + " FROM " + table + " WHERE " + partyColumn + " = new.id; END");
+
+            stmt.execute("INSERT INTO ledger_changes (ledger, entry_id, op, changed_at) " +
+                    "SELECT " + ledger + ", id, 'I', " + now + " FROM " + table + " ORDER BY id");
+        }
+        stmt.execute("CREATE TRIGGER categories_log_rename AFTER UPDATE OF name ON categories BEGIN " +
+                "INSERT INTO ledger_changes (ledger, entry_id, op, changed_at) " +
+                "SELECT 0, id, 'U', " + now + " FROM invoices WHERE category_id = new.id " +
+                "UNION ALL SELECT 1, id, 'U', " + now + " FROM income_invoices WHERE category_id = new.id; END");
+    }
+
+    // v5: ledger_search, an FTS5 index over the description, vendor / client and
+    // category of every invoice and income, for search(). Both ledgers share it so
+    // their matches rank against each other: rowid is id * 2 for an invoice and
+    // id * 2 + 1 for an income. Triggers keep it in step with every write,
+    // including renames of vendors, clients and categories.
+    // FTS5 flushes its pending terms to disk whenever a trigger runs, which made
+    // bulk inserts six times slower. So the bulk insert paths set
+    // ledger_search_sync.deferred inside their transaction, which switches the insert
+    // triggers off, and index the whole batch with one INSERT ... SELECT (see
+    // runBatch()). Every other writer still goes through the triggers.
+    private void migrateToV5(Statement stmt) throws SQLException {
+        stmt.execute("CREATE VIRTUAL TABLE ledger_search USING fts5(" +
+                "description, party, category, issued_date UNINDEXED, " +
+                "tokenize = 'unicode61 remove_diacritics 2', prefix = '2 3')");
+        stmt.execute("CREATE TABLE ledger_search_sync (deferred INTEGER NOT NULL)");
+        stmt.execute("INSERT INTO ledger_search_sync (deferred) VALUES (0)");
+
+        String[][] ledgers = {
+                // table, party column, party table, rowid offset
+                { "invoices", "vendor_id", "vendors", "0" },
+                { "income_invoices", "client_id", "clients", "1" },
+        };
+        for (String[] l : ledgers) {
+            String table = l[0], partyColumn = l[1], partyTable = l[2], offset = l[3];
+            String index = "INSERT INTO ledger_search (rowid, description, party, category, issued_date) " +
+                    "VALUES (new.id * 2 + " + offset + ", new.description, " +
+                    "(SELECT name FROM " + partyTable + " WHERE id = new." + partyColumn + "), " +
+                    "(SELECT name FROM categories WHERE id = new.category_id), new.issued_date);";
+            String unindex = "DELETE FROM ledger_search WHERE rowid = old.id * 2 + " + offset + ";";
+            stmt.execute("CREATE TRIGGER " + table + "_search_insert AFTER INSERT ON " + table + " " +
+                    "WHEN (SELECT deferred FROM ledger_search_sync) = 0 BEGIN " + index + " END");
+            stmt.execute("CREATE TRIGGER " + table + "_search_delete AFTER DELETE ON " + table + " BEGIN " + unindex + " END");
+            stmt.execute("CREATE TRIGGER " + table + "_search_update AFTER UPDATE ON " + table + " BEGIN " + unindex + " " + index + " END");
+            stmt.execute("CREATE TRIGGER " + partyTable + "_search_rename AFTER UPDATE OF name ON " + partyTable + " BEGIN " +
+                    "UPDATE ledger_search SET party = new.name WHERE rowid IN " +
+                    "(SELECT id * 2 + " + offset + " FROM " + table + " WHERE " + partyColumn + " = new.id); END");
+
+            stmt.execute("INSERT INTO ledger_search (rowid, description, party, category, issued_date) " +
+                    "SELECT l.id * 2 + " + offset + ", l.description, p.name, c.name, l.issued_date FROM " + table + " l " +
+                    "JOIN " + partyTable + " p ON p.id = l." + partyColumn + " JOIN categories c ON c.id = l.category_id");
+        }
+        stmt.execute("CREATE TRIGGER categories_search_rename AFTER UPDATE OF name ON categories BEGIN " +
+                "UPDATE ledger_search SET category = new.name WHERE rowid IN " +
+                "(SELECT id * 2 FROM invoices WHERE category_id = new.id " +
+                "UNION ALL SELECT id * 2 + 1 FROM income_invoices WHERE category_id = new.id); END");
+    }
+
+    // Replaces table with <table>_new, created by createSql and filled by copySql.
+    // The AUTOINCREMENT counter is carried over so ids of deleted rows are never reused.
+    private void rebuildTable(Statement stmt, String table, String createSql, String copySql) throws SQLException {
+        long sequence = 0;
+        try (ResultSet rs = stmt.executeQuery("SELECT seq FROM sqlite_sequence WHERE name = '" + table + "'")) {
+            if (rs.next()) {
+                sequence = rs.getLong(1);
+            }
+        }
+
+        stmt.execute(createSql);
+        stmt.execute(copySql);
+        stmt.execute("DROP TABLE " + table);
+        stmt.execute("ALTER TABLE " + table + "_new RENAME TO " + table);
+
+        stmt.execute("DELETE FROM sqlite_sequence WHERE name = '" + table + "'");
+        stmt.execute("INSERT INTO sqlite_sequence (name, seq) SELECT '" + table + "', MAX(" + sequence + ", IFNULL(MAX(id), 0)) FROM " + table);
+    }
+
+    // QUERY PLANS
+    // The plan SQLite picks for fetchInvoices(query) / fetchIncomes(query), one line
+    // per step as EXPLAIN QUERY PLAN prints it, e.g. "SEARCH invoices USING INDEX ..."
+    List<String> explainInvoices(LedgerQuery query) throws SQLException {
+        return explain(query.toSql("invoices", "vendor_id", "vendors"), query, vendors);
+    }
+
+    List<String> explainIncomes(LedgerQuery query) throws SQLException {
+        return explain(query.toSql("income_invoices", "client_id", "clients"), query, clients);
+    }
+
+    // The same for forEachEntry(), which has to merge the two ledgers without sorting
+    List<String> explainEntries(long fromTimestamp, long toTimestamp) throws SQLException {
+        return read(c -> {
+            PreparedStatement pstmt = c.prepare("EXPLAIN QUERY PLAN " + ENTRIES_SQL);
+            pstmt.setLong(1, fromTimestamp);
+            pstmt.setLong(2, toTimestamp);
+            pstmt.setLong(3, fromTimestamp);
+            pstmt.setLong(4, toTimestamp);
+            return planSteps(pstmt);
+        });
+    }
+
+    private List<String> explain(String sql, LedgerQuery query, NameDictionary parties) throws SQLException {
+        return read(c -> {
+            PreparedStatement pstmt = c.prepare("EXPLAIN QUERY PLAN " + sql);
+            bindQuery(c, pstmt, query, parties);
+            return planSteps(pstmt);
+        });
+    }
+
+    private static List<String> planSteps(PreparedStatement pstmt) throws SQLException {
+        List<String> steps = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                steps.add(rs.getString("detail"));
+            }
+        }
+        return steps;
+    }
+
+    // INVOICES
+    // CREATE
+    public void insertInvoice(Invoice invoice) throws SQLException {
+        invoice.setId(writeTransaction(c -> {
+            PreparedStatement pstmt = c.prepare(INSERT_INVOICE_SQL);
+            bindInvoice(c, pstmt, invoice);
+            pstmt.executeUpdate();
+            rollup.add(MonthlyRollup.INVOICE, invoice);
+            return (int) lastInsertRowId(c);
+        }));
+    }
+
+    // Inserts every invoice in batches of batchSize rows, one transaction per batch.
+    // The generated ids are written back into the invoices and also returned.
+    public int[] insertInvoices(List<Invoice> invoices) throws SQLException {
+        int[] ids = executeBatched(INSERT_INVOICE_SQL, invoices, this::bindInvoice, INDEX_INVOICES_SQL,
+                (c, invoice) -> rollup.add(MonthlyRollup.INVOICE, invoice));
+        for (int i = 0; i < ids.length; i++) {
+            invoices.get(i).setId(ids[i]);
+        }
+        return ids;
+    }
+
+    // READ (basic filter support)
+    public List<Invoice> fetchInvoices(String vendorFilter, String categoryFilter, Long fromTimestamp, Long toTimestamp)
+            throws SQLException {
+        return fetchInvoices(new LedgerQuery()
+                .party(vendorFilter)
+                .category(categoryFilter)
+                .between(fromTimestamp, toTimestamp));
+    }
+
+    public List<Invoice> fetchInvoices(LedgerQuery query) throws SQLException {
+        List<Invoice> invoices = new ArrayList<>();
+        forEachInvoice(query, invoices::add);
+        return invoices;
+    }
+
+    public <E extends Exception> void forEachInvoice(String vendorFilter, String categoryFilter, Long fromTimestamp,
+            Long toTimestamp, RowHandler<? super Invoice, E> handler) throws SQLException, E {
+        forEachInvoice(new LedgerQuery()
+                .party(vendorFilter)
+                .category(categoryFilter)
+                .between(fromTimestamp, toTimestamp), handler);
+    }
+
+    public int countInvoices(LedgerQuery query) throws SQLException {
+        return count(query.toCountSql("invoices", "vendor_id", "vendors"), query, vendors);
+    }
+
+    // Where every page of pageSize rows starts, for walking the matches in (issued_date, id)
+    // order with query.startingAt(start).page(pageSize, null). One pass over the index,
+    // keeping one position per page.
+    public List<LedgerQuery.Position> fetchInvoicePageStarts(LedgerQuery query, int pageSize) throws SQLException {
+        return read(c -> {
+            PreparedStatement pstmt = c.prepare(query.toPageStartSql("invoices", "vendor_id"));
+            int idx = query.bindFilters(pstmt, idOf(c, vendors, query.getParty()), idOf(c, categories, query.getCategory()));
+            pstmt.setInt(idx, pageSize);
+            List<LedgerQuery.Position> starts = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    starts.add(new LedgerQuery.Position(rs.getLong(1), rs.getInt(2)));
+                }
+            }
+            return starts;
+        });
+    }
+
+    // Streams matching invoices to handler straight off the cursor, fetchSize rows at a time.
+    // Nothing is collected, so memory stays flat however many rows match.
+    // Holds one reader connection until the last row has been handled.
+    public <E extends Exception> void forEachInvoice(LedgerQuery query, RowHandler<? super Invoice, E> handler)
+            throws SQLException, E {
+        ConnectionPool.PooledConnection c = pool.acquireReader();
+        try {
+            PreparedStatement pstmt = c.prepare(query.toSql("invoices", "vendor_id", "vendors"));
+            bindQuery(c, pstmt, query, vendors);
+            pstmt.setFetchSize(fetchSize);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(readInvoice(c, rs));
+                }
+            }
+        } finally {
+            pool.releaseReader(c);
+        }
+    }
+
+    private Invoice readInvoice(ConnectionPool.PooledConnection c, ResultSet rs) throws SQLException {
+        return new Invoice(
+                rs.getInt("id"),
+                vendors.name(c, rs.getInt("vendor_id")),
+                categories.name(c, rs.getInt("category_id")),
+                rs.getLong("issued_date"),
+                rs.getString("description"),
+                Money.ofCents(rs.getLong("amount_cents")),
+                rs.getInt("tax_included") == 1,
+                rs.getInt("non_taxable") == 1);
+    }
+
+    // UPDATE
+    public void updateInvoice(Invoice invoice) throws SQLException {
+        writeTransaction(c -> {
+            Invoice old = findInvoice(c, invoice.getId());
+            if (old == null) {
+                return 0;
+            }
+            PreparedStatement pstmt = c.prepare(UPDATE_INVOICE_SQL);
+            bindInvoice(c, pstmt, invoice);
+            pstmt.setInt(8, invoice.getId());
+            rollup.subtract(MonthlyRollup.INVOICE, old);
+            rollup.add(MonthlyRollup.INVOICE, invoice);
+            return pstmt.executeUpdate();
+        });
+    }
+
+    public void updateInvoices(List<Invoice> invoices) throws SQLException {
+        Map<Integer, Invoice> touched = new HashMap<>();
+        executeBatched(UPDATE_INVOICE_SQL, invoices, (c, pstmt, invoice) -> {
+            bindInvoice(c, pstmt, invoice);
+            pstmt.setInt(8, invoice.getId());
+        }, null, (c, invoice) -> {
+            Invoice old = currentInvoice(c, invoice.getId(), touched);
+            if (old != null) {
+                rollup.subtract(MonthlyRollup.INVOICE, old);
+                rollup.add(MonthlyRollup.INVOICE, invoice);
+                touched.put(invoice.getId(), invoice);
+            }
+        });
+    }
+
+    // DELETE
+    public void deleteInvoice(int id) throws SQLException {
+        writeTransaction(c -> {
+            Invoice old = findInvoice(c, id);
+            if (old == null) {
+                return 0;
+            }
+            PreparedStatement pstmt = c.prepare(DELETE_INVOICE_SQL);
+            pstmt.setInt(1, id);
+            rollup.subtract(MonthlyRollup.INVOICE, old);
+            return pstmt.executeUpdate();
+        });
+    }
+
+    public void deleteInvoices(List<Integer> ids) throws SQLException {
+        Map<Integer, Invoice> touched = new HashMap<>();
+        executeBatched(DELETE_INVOICE_SQL, ids, (c, pstmt, id) -> pstmt.setInt(1, id), null, (c, id) -> {
+            Invoice old = currentInvoice(c, id, touched);
+            if (old != null) {
+                rollup.subtract(MonthlyRollup.INVOICE, old);
+                touched.put(id, null);
+            }
+        });
+    }
+
+    private Invoice findInvoice(ConnectionPool.PooledConnection c, int id) throws SQLException {
+        PreparedStatement pstmt = c.prepare("SELECT * FROM invoices WHERE id = ?");
+        pstmt.setInt(1, id);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? readInvoice(c, rs) : null;
+        }
+    }
+
+    // The row as the earlier items of the same batch left it. Batched statements only
+    // run at executeBatch(), so the table itself still shows the row from before the batch.
+    private Invoice currentInvoice(ConnectionPool.PooledConnection c, int id, Map<Integer, Invoice> touched)
+            throws SQLException {
+        return touched.containsKey(id) ? touched.get(id) : findInvoice(c, id);
+    }
+
+    // Names the ledger hasn't seen yet are added to vendors / categories on the way in
+    private void bindInvoice(ConnectionPool.PooledConnection c, PreparedStatement pstmt, Invoice invoice)
+            throws SQLException {
+        pstmt.setInt(1, vendors.intern(c, invoice.getVendor()));
+        pstmt.setInt(2, categories.intern(c, invoice.getCategory()));
+        pstmt.setLong(3, invoice.getIssuedDate());
+        pstmt.setString(4, invoice.getDescription());
+        pstmt.setLong(5, invoice.getAmountCents());
+        pstmt.setInt(6, invoice.isTaxIncluded() ? 1 : 0);
+        pstmt.setInt(7, invoice.isNonTaxable() ? 1 : 0);
+    }
+
+    // INCOMES
+    // CREATE
+    public void insertIncome(Income income) throws SQLException {
+        income.setId(writeTransaction(c -> {
+            PreparedStatement pstmt = c.prepare(INSERT_INCOME_SQL);
+            bindIncome(c, pstmt, income);
+            pstmt.executeUpdate();
+            rollup.add(MonthlyRollup.INCOME, income);
+            return (int) lastInsertRowId(c);
+        }));
+    }
+
+    public int[] insertIncomes(List<Income> incomes) throws SQLException {
+        int[] ids = executeBatched(INSERT_INCOME_SQL, incomes, this::bindIncome, INDEX_INCOMES_SQL,
+                (c, income) -> rollup.add(MonthlyRollup.INCOME, income));
+        for (int i = 0; i < ids.length; i++) {
+            incomes.get(i).setId(ids[i]);
+        }
+        return ids;
+    }
+
+    // INVOICES AND INCOMES TOGETHER
+    // Inserts both lists in a single transaction, however long they are, e.g. one chunk
+    // of an import: one commit and one monthly_totals update instead of one per batch.
+    // Ids are written back into the entries.
+    public void insertEntries(List<Invoice> invoices, List<Income> incomes) throws SQLException {
+        int[] invoiceIds = new int[invoices.size()];
+        int[] incomeIds = new int[incomes.size()];
+        writeTransaction(c -> {
+            runBatch(c, c.prepare(INSERT_INVOICE_SQL), invoices, 0, invoices.size(), this::bindInvoice,
+                    (w, invoice) -> rollup.add(MonthlyRollup.INVOICE, invoice), invoiceIds, INDEX_INVOICES_SQL);
+            runBatch(c, c.prepare(INSERT_INCOME_SQL), incomes, 0, incomes.size(), this::bindIncome,
+                    (w, income) -> rollup.add(MonthlyRollup.INCOME, income), incomeIds, INDEX_INCOMES_SQL);
+            return null;
+        });
+        for (int i = 0; i < invoiceIds.length; i++) {
+            invoices.get(i).setId(invoiceIds[i]);
+        }
+        for (int i = 0; i < incomeIds.length; i++) {
+            incomes.get(i).setId(incomeIds[i]);
+        }
+    }
+
+    // Streams every invoice and income issued between the two timestamps (inclusive, either
+    // may be null) to handler in date order, in one scan; see ENTRIES_SQL. Tell them apart
+    // with FinancialEntry.isIncome(). Holds one reader connection until the last row.
+    public <E extends Exception> void forEachEntry(Long fromTimestamp, Long toTimestamp,
+            RowHandler<? super ExcelExporter.FinancialEntry, E> handler) throws SQLException, E {
+        long from = fromTimestamp != null ? fromTimestamp : Long.MIN_VALUE;
+        long to = toTimestamp != null ? toTimestamp : Long.MAX_VALUE;
+        ConnectionPool.PooledConnection c = pool.acquireReader();
+        try {
+            PreparedStatement pstmt = c.prepare(ENTRIES_SQL);
+            pstmt.setLong(1, from);
+            pstmt.setLong(2, to);
+            pstmt.setLong(3, from);
+            pstmt.setLong(4, to);
+            pstmt.setFetchSize(fetchSize);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(readEntry(c, rs));
+                }
+            }
+        } finally {
+            pool.releaseReader(c);
+        }
+    }
+
+    // forEachEntry() for number crunching: the same rows in the same order, but as
+    // vendor / client / category ids and plain values, read by column index, with
+    // no description and no object per row. Turn ids back into names with
+    // vendorName(), clientName() and categoryName().
+    public <E extends Exception> void forEachEntryRow(Long fromTimestamp, Long toTimestamp, EntryRowHandler<E> handler)
+            throws SQLException, E {
+        long from = fromTimestamp != null ? fromTimestamp : Long.MIN_VALUE;
+        long to = toTimestamp != null ? toTimestamp : Long.MAX_VALUE;
+        ConnectionPool.PooledConnection c = pool.acquireReader();
+        try {
+            PreparedStatement pstmt = c.prepare(ENTRY_ROWS_SQL);
+            pstmt.setLong(1, from);
+            pstmt.setLong(2, to);
+            pstmt.setLong(3, from);
+            pstmt.setLong(4, to);
+            pstmt.setFetchSize(fetchSize);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(rs.getInt(1) == 1, rs.getInt(3), rs.getInt(4), rs.getLong(5),
+                            rs.getLong(6), rs.getInt(7) == 1, rs.getInt(8) == 1);
+                }
+            }
+        } finally {
+            pool.releaseReader(c);
+        }
+    }
+
+    public String vendorName(int id) throws SQLException {
+        return read(c -> vendors.name(c, id));
+    }
+
+    public String clientName(int id) throws SQLException {
+        return read(c -> clients.name(c, id));
+    }
+
+    public String categoryName(int id) throws SQLException {
+        return read(c -> categories.name(c, id));
+    }
+
+    // CHANGE LOG
+    // One entry of forEachChangeSince()
+    public static final class Change {
+        private final long seq;
+        private final boolean income;
+        private final int id;
+        private final ExcelExporter.FinancialEntry entry;
+
+        Change(long seq, boolean income, int id, ExcelExporter.FinancialEntry entry) {
+            this.seq = seq;
+            this.income = income;
+            this.id = id;
+            this.entry = entry;
+        }
+
+        // Sequence number of the entry's latest change
+        public long getSeq() { return seq; }
+        public boolean isIncome() { return income; }
+        public int getId() { return id; }
+        public boolean isDeleted() { return entry == null; }
+
+        // The Invoice or Income as it is now; null once deleted
+        public ExcelExporter.FinancialEntry getEntry() { return entry; }
+    }
+
+    // Streams every invoice and income changed after seq: inserted, updated, deleted or
+    // renamed through its vendor / client or category. Each comes once, as it is now,
+    // in the order of its latest change, so applying them in order to a copy that was
+    // in step at seq brings it up to date; getSeq() of the last one is where to
+    // continue from next time. Since 0 is the whole ledger.
+    public <E extends Exception> void forEachChangeSince(long seq, RowHandler<? super Change, E> handler)
+            throws SQLException, E {
+        ConnectionPool.PooledConnection c = pool.acquireReader();
+        try {
+            PreparedStatement pstmt = c.prepare(CHANGES_SQL);
+            pstmt.setLong(1, seq);
+            pstmt.setFetchSize(fetchSize);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    boolean income = rs.getInt("kind") == 1;
+                    ExcelExporter.FinancialEntry entry = rs.getInt("deleted") == 1 ? null : readEntry(c, rs);
+                    handler.accept(new Change(rs.getLong("seq"), income, rs.getInt("id"), entry));
+                }
+            }
+        } finally {
+            pool.releaseReader(c);
+        }
+    }
+
+    // Sequence number of the latest change, 0 if nothing was ever logged
+    public long getLastChangeSeq() throws SQLException {
+        return read(c -> {
+            try (ResultSet rs = c.prepare("SELECT coalesce(max(seq), 0) FROM ledger_changes").executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        });
+    }
+
+    private ExcelExporter.FinancialEntry readEntry(ConnectionPool.PooledConnection c, ResultSet rs) throws SQLException {
+        int id = rs.getInt("id");
+        int partyId = rs.getInt("party_id");
+        String category = categories.name(c, rs.getInt("category_id"));
+        long issuedDate = rs.getLong("issued_date");
+        String description = rs.getString("description");
+        Money amount = Money.ofCents(rs.getLong("amount_cents"));
+        boolean taxIncluded = rs.getInt("tax_included") == 1;
+        boolean nonTaxable = rs.getInt("non_taxable") == 1;
+        if (rs.getInt("kind") == 1) {
+            return new Income(id, clients.name(c, partyId), category, issuedDate, description, amount, taxIncluded, nonTaxable);
+        }
+        return new Invoice(id, vendors.name(c, partyId), category, issuedDate, description, amount, taxIncluded, nonTaxable);
+    }
+
+    // READ
+    public List<Income> fetchIncomes(Long fromTimestamp, Long toTimestamp) throws SQLException {
+        return fetchIncomes(new LedgerQuery().between(fromTimestamp, toTimestamp));
+    }
+
+    public List<Income> fetchIncomes(LedgerQuery query) throws SQLException {
+        List<Income> incomes = new ArrayList<>();
+        forEachIncome(query, incomes::add);
+        return incomes;
+    }
+
+    public <E extends Exception> void forEachIncome(Long fromTimestamp, Long toTimestamp,
+            RowHandler<? super Income, E> handler) throws SQLException, E {
+        forEachIncome(new LedgerQuery().between(fromTimestamp, toTimestamp), handler);
+    }
+
+    public int countIncomes(LedgerQuery query) throws SQLException {
+        return count(query.toCountSql("income_invoices", "client_id", "clients"), query, clients);
+    }
+
+    public <E extends Exception> void forEachIncome(LedgerQuery query, RowHandler<? super Income, E> handler)
+            throws SQLException, E {
+        ConnectionPool.PooledConnection c = pool.acquireReader();
+        try {
+            PreparedStatement pstmt = c.prepare(query.toSql("income_invoices", "client_id", "clients"));
+            bindQuery(c, pstmt, query, clients);
+            pstmt.setFetchSize(fetchSize);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(readIncome(c, rs));
+                }
+            }
+        } finally {
+            pool.releaseReader(c);
+        }
+    }
+
+    private Income readIncome(ConnectionPool.PooledConnection c, ResultSet rs) throws SQLException {
+        return new Income(
+                rs.getInt("id"),
+                clients.name(c, rs.getInt("client_id")),
+                categories.name(c, rs.getInt("category_id")),
+                rs.getLong("issued_date"),
+                rs.getString("description"),
+                Money.ofCents(rs.getLong("amount_cents")),
+                rs.getInt("tax_included") == 1,
+                rs.getInt("non_taxable") == 1);
+    }
+
+    // UPDATE
+    public void updateIncome(Income income) throws SQLException {
+        writeTransaction(c -> {
+            Income old = findIncome(c, income.getId());
+            if (old == null) {
+                return 0;
+            }
+            PreparedStatement pstmt = c.prepare(UPDATE_INCOME_SQL);
+            bindIncome(c, pstmt, income);
+            pstmt.setInt(8, income.getId());
+            rollup.subtract(MonthlyRollup.INCOME, old);
+            rollup.add(MonthlyRollup.INCOME, income);
+            return pstmt.executeUpdate();
+        });
+    }
+
+    public void updateIncomes(List<Income> incomes) throws SQLException {
+        Map<Integer, Income> touched = new HashMap<>();
+        executeBatched(UPDATE_INCOME_SQL, incomes, (c, pstmt, income) -> {
+            bindIncome(c, pstmt, income);
+            pstmt.setInt(8, income.getId());
+        }, null, (c, income) -> {
+            Income old = currentIncome(c, income.getId(), touched);
+            if (old != null) {
+                rollup.subtract(MonthlyRollup.INCOME, old);
+                rollup.add(MonthlyRollup.INCOME, income);
+                touched.put(income.getId(), income);
+            }
+        });
+    }
+
+    // DELETE
+    public void deleteIncome(int id) throws SQLException {
+        writeTransaction(c -> {
+            Income old = findIncome(c, id);
+            if (old == null) {
+                return 0;
+            }
+            PreparedStatement pstmt = c.prepare(DELETE_INCOME_SQL);
+            pstmt.setInt(1, id);
+            rollup.subtract(MonthlyRollup.INCOME, old);
+            return pstmt.executeUpdate();
+        });
+    }
+
+    public void deleteIncomes(List<Integer> ids) throws SQLException {
+        Map<Integer, Income> touched = new HashMap<>();
+        executeBatched(DELETE_INCOME_SQL, ids, (c, pstmt, id) -> pstmt.setInt(1, id), null, (c, id) -> {
+            Income old = currentIncome(c, id, touched);
+            if (old != null) {
+                rollup.subtract(MonthlyRollup.INCOME, old);
+                touched.put(id, null);
+            }
+        });
+    }
+
+    private Income findIncome(ConnectionPool.PooledConnection c, int id) throws SQLException {
+        PreparedStatement pstmt = c.prepare("SELECT * FROM income_invoices WHERE id = ?");
+        pstmt.setInt(1, id);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? readIncome(c, rs) : null;
+        }
+    }
+
+    private Income currentIncome(ConnectionPool.PooledConnection c, int id, Map<Integer, Income> touched)
+            throws SQLException {
+        return touched.containsKey(id) ? touched.get(id) : findIncome(c, id);
+    }
+
+    private void bindIncome(ConnectionPool.PooledConnection c, PreparedStatement pstmt, Income income)
+            throws SQLException {
+        pstmt.setInt(1, clients.intern(c, income.getClient()));
+        pstmt.setInt(2, categories.intern(c, income.getCategory()));
+        pstmt.setLong(3, income.getIssuedDate());
+        pstmt.setString(4, income.getDescription());
+        pstmt.setLong(5, income.getAmountCents());
+        pstmt.setInt(6, income.isTaxIncluded() ? 1 : 0);
+        pstmt.setInt(7, income.isNonTaxable() ? 1 : 0);
+    }
+
+    // MONTHLY TOTALS
+    // kind is MonthlyRollup.INVOICE or MonthlyRollup.INCOME; periods are yyyymm, inclusive
+
+    // Recomputes monthly_totals from the ledger, e.g. after moving the books to another time zone
+    public void rebuildMonthlyTotals() throws SQLException {
+        writeTransaction(c -> {
+            rollup.rebuild(c);
+            return null;
+        });
+    }
+
+    // One row per month, category and vendor/client, in month order
+    public List<MonthlyRollup.Total> fetchMonthlyTotals(String kind, int fromPeriod, int toPeriod) throws SQLException {
+        return read(c -> {
+            PreparedStatement pstmt = c.prepare("SELECT * FROM monthly_totals WHERE kind = ? AND period BETWEEN ? AND ? " +
+                    "ORDER BY period, category_id, party_id");
+            pstmt.setString(1, kind);
+            pstmt.setInt(2, fromPeriod);
+            pstmt.setInt(3, toPeriod);
+            List<MonthlyRollup.Total> totals = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    totals.add(new MonthlyRollup.Total(kind, rs.getInt("period"),
+                            categories.name(c, rs.getInt("category_id")),
+                            rollup.parties(kind).name(c, rs.getInt("party_id")), MonthlyRollup.readTotals(rs)));
+                }
+            }
+            return totals;
+        });
+    }
+
+    // Grand totals over the months, e.g. 202401..202403 for the first quarter of 2024
+    public TaxCalculator.Accumulator sumMonthlyTotals(String kind, int fromPeriod, int toPeriod) throws SQLException {
+        return read(c -> {
+            PreparedStatement pstmt = c.prepare("SELECT IFNULL(SUM(entries), 0) AS entries, " +
+                    "IFNULL(SUM(base_cents), 0) AS base_cents, IFNULL(SUM(gst_cents), 0) AS gst_cents, " +
+                    "IFNULL(SUM(qst_cents), 0) AS qst_cents, IFNULL(SUM(total_cents), 0) AS total_cents, " +
+                    "IFNULL(SUM(non_taxable_cents), 0) AS non_taxable_cents " +
+                    "FROM monthly_totals WHERE kind = ? AND period BETWEEN ? AND ?");
+            pstmt.setString(1, kind);
+            pstmt.setInt(2, fromPeriod);
+            pstmt.setInt(3, toPeriod);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return MonthlyRollup.readTotals(rs);
+            }
+        });
+    }
+
+    // SEARCH
+    // Invoices and incomes whose description, vendor / client or category hold every
+    // word of text, best match first (latest issued date first when the words are too
+    // common to rank, see MAX_RANKED_MATCHES). The last word also matches as a prefix
+    // unless text ends with a space, so results can follow along while someone types.
+    // fromTimestamp / toTimestamp bound the issued date when not null. Invoice and
+    // Income tell the two kinds apart. Runs on the full-text index (see migrateToV5),
+    // so it takes milliseconds whatever the size of the ledger.
+    public List<ExcelExporter.FinancialEntry> search(String text, Long fromTimestamp, Long toTimestamp, int limit)
+            throws SQLException {
+        String match = toMatchExpression(text);
+        if (match == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+        return read(c -> {
+            PreparedStatement count = c.prepare("SELECT count(*) FROM ledger_search WHERE ledger_search MATCH ?");
+            count.setString(1, match);
+            boolean ranked;
+            try (ResultSet rs = count.executeQuery()) {
+                ranked = rs.next() && rs.getInt(1) <= MAX_RANKED_MATCHES;
+            }
+
+            boolean dated = fromTimestamp != null || toTimestamp != null;
+            PreparedStatement pstmt = c.prepare(searchSql(ranked, dated));
+            int idx = 1;
+            pstmt.setString(idx++, match);
+            if (dated) {
+                pstmt.setLong(idx++, fromTimestamp != null ? fromTimestamp : Long.MIN_VALUE);
+                pstmt.setLong(idx++, toTimestamp != null ? toTimestamp : Long.MAX_VALUE);
+            }
+            pstmt.setInt(idx, limit);
+            List<Long> rowids = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rowids.add(rs.getLong(1));
+                }
+            }
+
+            List<ExcelExporter.FinancialEntry> hits = new ArrayList<>(rowids.size());
+            for (long rowid : rowids) {
+                int id = (int) (rowid >> 1);
+                ExcelExporter.FinancialEntry entry = (rowid & 1) == 0 ? findInvoice(c, id) : findIncome(c, id);
+                if (entry != null) { // deleted since the index was read
+                    hits.add(entry);
+                }
+            }
+            return hits;
+        });
+    }
+
+    // Ranked by bm25 with a vendor / client match counting double, or by issued date,
+    // latest first (ties newest entry first). issued_date is stored in the index itself,
+    // so neither the date order nor a date range touches the ledger tables.
+    private static String searchSql(boolean ranked, boolean dated) {
+        return "SELECT rowid FROM ledger_search WHERE ledger_search MATCH ?" +
+                (dated ? " AND issued_date BETWEEN ? AND ?" : "") +
+                (ranked ? " ORDER BY bm25(ledger_search, 1.0, 2.0, 1.0)" : " ORDER BY issued_date DESC, rowid DESC") +
+                " LIMIT ?";
+    }
+
+    // What someone typed as an FTS5 query: every word must match. Each word is quoted,
+    // so quotes, dashes, "OR" and the like are searched for, never parsed as syntax.
+    // null when text has no words.
+    private static String toMatchExpression(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : WORD_SEPARATORS.split(text)) {
+            if (!word.isEmpty()) {
+                match.append(match.length() == 0 ? "" : " ").append('"').append(word).append('"');
+            }
+        }
+        if (match.length() == 0) {
+            return null;
+        }
+        if (!WORD_SEPARATORS.matcher(text.substring(text.length() - 1)).matches()) {
+            match.append('*');
+        }
+        return match.toString();
+    }
+
+    // BATCHING AND CURSORS
+    // Rows per transaction used by the bulk insert/update/delete methods
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.batchSize = batchSize;
+    }
+
+    // Rows the driver pulls per round trip in the forEach* readers
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be at least 1");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    // Runs sql once per item through one cached statement, committing every batchSize rows.
+    // rollupStep records each item's effect on monthly_totals, which is written in the same transaction.
+    // For inserts, indexSql is INDEX_INVOICES_SQL or INDEX_INCOMES_SQL and the generated ids
+    // are returned; it is null for updates and deletes.
+    // A failing batch is rolled back; batches committed before it are kept.
+    // The writer connection is held for all batches, so other writers wait until the last commit.
+    private <T> int[] executeBatched(String sql, List<T> items, StatementBinder<T> binder, String indexSql,
+            RollupStep<T> rollupStep) throws SQLException {
+        boolean returnIds = indexSql != null;
+        return write(c -> {
+            Connection conn = c.getConnection();
+            PreparedStatement pstmt = c.prepare(sql);
+            int[] ids = new int[returnIds ? items.size() : 0];
+
+            conn.setAutoCommit(false);
+            try {
+                for (int start = 0; start < items.size(); start += batchSize) {
+                    int end = Math.min(start + batchSize, items.size());
+                    runBatch(c, pstmt, items, start, end, binder, rollupStep, returnIds ? ids : null, indexSql);
+                    rollup.flush(c);
+                    conn.commit();
+                }
+            } catch (SQLException e) {
+                rollup.discard();
+                conn.rollback();
+                forgetNames();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            return ids;
+        });
+    }
+
+    // Runs items[start, end) through pstmt as one JDBC batch, filling ids[start, end) with the
+    // generated ids unless ids is null. An insert batch passes its indexSql: the search
+    // triggers are switched off for the batch and the new rows indexed in one statement.
+    // The caller owns the transaction, and rolling it back also undoes the switch.
+    private <T> void runBatch(ConnectionPool.PooledConnection c, PreparedStatement pstmt, List<T> items, int start,
+            int end, StatementBinder<T> binder, RollupStep<T> rollupStep, int[] ids, String indexSql) throws SQLException {
+        if (start == end) {
+            return;
+        }
+        if (indexSql != null) {
+            setSearchDeferred(c, true);
+        }
+        try {
+            for (int i = start; i < end; i++) {
+                rollupStep.apply(c, items.get(i));
+                binder.bind(c, pstmt, items.get(i));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        } catch (SQLException e) {
+            pstmt.clearBatch();
+            throw e;
+        }
+
+        if (ids != null) {
+            // AUTOINCREMENT hands out consecutive rowids to the rows of a batch,
+            // since nothing else can write between them inside this transaction
+            long lastId = lastInsertRowId(c);
+            for (int i = end - 1; i >= start; i--) {
+                ids[i] = (int) (lastId - (end - 1 - i));
+            }
+        }
+        if (indexSql != null) {
+            PreparedStatement index = c.prepare(indexSql);
+            long lastId = lastInsertRowId(c);
+            index.setLong(1, lastId - (end - start - 1));
+            index.setLong(2, lastId);
+            index.executeUpdate();
+            setSearchDeferred(c, false);
+        }
+    }
+
+    private static void setSearchDeferred(ConnectionPool.PooledConnection c, boolean deferred) throws SQLException {
+        PreparedStatement pstmt = c.prepare("UPDATE ledger_search_sync SET deferred = ?");
+        pstmt.setInt(1, deferred ? 1 : 0);
+        pstmt.executeUpdate();
+    }
+
+    private static long lastInsertRowId(ConnectionPool.PooledConnection c) throws SQLException {
+        try (ResultSet rs = c.prepare("SELECT last_insert_rowid()").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private int count(String sql, LedgerQuery query, NameDictionary parties) throws SQLException {
+        return read(c -> {
+            PreparedStatement pstmt = c.prepare(sql);
+            bindQuery(c, pstmt, query, parties);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        });
+    }
+
+    // Binds query with its party and category names turned into ids
+    private void bindQuery(ConnectionPool.PooledConnection c, PreparedStatement pstmt, LedgerQuery query,
+            NameDictionary parties) throws SQLException {
+        query.bind(pstmt, idOf(c, parties, query.getParty()), idOf(c, categories, query.getCategory()));
+    }
+
+    private static int idOf(ConnectionPool.PooledConnection c, NameDictionary names, String name) throws SQLException {
+        if (!LedgerQuery.isSet(name)) {
+            return NO_ID;
+        }
+        Integer id = names.findId(c, name);
+        return id != null ? id : NO_ID;
+    }
+
+    // After a rollback: names interned by the undone work may have been undone with it
+    private void forgetNames() {
+        vendors.clear();
+        clients.clear();
+        categories.clear();
+    }
+
+    // CONNECTIONS
+    // Runs work on the writer connection, waiting for any write in progress.
+    // Statements come from the connection's own cache via c.prepare(sql); LedgerQuery
+    // reads are cached the same way, one entry per filter shape.
+    private <T> T write(SqlWork<T> work) throws SQLException {
+        ConnectionPool.PooledConnection c = pool.acquireWriter();
+        try {
+            return work.run(c);
+        } finally {
+            dataVersion.incrementAndGet(); // failed writes too, a batch may have committed part of its rows
+            pool.releaseWriter();
+        }
+    }
+
+    // A number that changes whenever the ledger may have changed: every write through
+    // this Database bumps it, and so does a commit by any other connection to the
+    // file, e.g. a command-line import while the window is open (SQLite reports those
+    // through PRAGMA data_version). Equal versions mean the same data, so results
+    // computed at one version can be reused until it moves, see ReportCache.
+    public long getDataVersion() throws SQLException {
+        ConnectionPool.PooledConnection c = pool.acquireWriter();
+        try {
+            try (ResultSet rs = c.prepare("PRAGMA data_version").executeQuery()) {
+                rs.next();
+                long pragma = rs.getLong(1);
+                if (pragma != lastDataVersionPragma) {
+                    lastDataVersionPragma = pragma;
+                    dataVersion.incrementAndGet();
+                }
+            }
+            return dataVersion.get();
+        } finally {
+            pool.releaseWriter();
+        }
+    }
+
+    // Runs work on the writer connection in one transaction, together with the
+    // monthly_totals changes it recorded
+    private <T> T writeTransaction(SqlWork<T> work) throws SQLException {
+        return write(c -> {
+            Connection conn = c.getConnection();
+            conn.setAutoCommit(false);
+            try {
+                T result = work.run(c);
+                rollup.flush(c);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                rollup.discard();
+                conn.rollback();
+                forgetNames();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        });
+    }
+
+    // Runs work on a borrowed reader connection
+    private <T> T read(SqlWork<T> work) throws SQLException {
+        ConnectionPool.PooledConnection c = pool.acquireReader();
+        try {
+            return work.run(c);
+        } finally {
+            pool.releaseReader(c);
+        }
+    }
+
+    private interface SqlWork<T> {
+        T run(ConnectionPool.PooledConnection c) throws SQLException;
+    }
+
+    // Called once per row by the forEach* readers; E lets it throw its own checked exception
+    public interface RowHandler<T, E extends Exception> {
+        void accept(T row) throws E;
+    }
+
+    // One row of forEachEntryRow(); partyId is a vendor id for invoices, a client id for incomes
+    public interface EntryRowHandler<E extends Exception> {
+        void accept(boolean income, int partyId, int categoryId, long issuedDate, long amountCents,
+                boolean taxIncluded, boolean nonTaxable) throws E;
+    }
+
+    private interface StatementBinder<T> {
+        void bind(ConnectionPool.PooledConnection c, PreparedStatement pstmt, T item) throws SQLException;
+    }
+
+    private interface RollupStep<T> {
+        void apply(ConnectionPool.PooledConnection c, T item) throws SQLException;
+    }
+
+    // CLOSE CONNECTION
+    public void close() throws SQLException {
+        try {
+            // Lets SQLite re-analyze tables whose statistics went stale this session
+            write(c -> {
+                try (Statement stmt = c.getConnection().createStatement()) {
+                    stmt.execute("PRAGMA optimize");
+                }
+                return null;
+            });
+        } catch (SQLException | RuntimeException e) {
+            // Only a tune-up (busy, I/O error, interrupted): the connections still get closed
+        } finally {
+            pool.close();
+        }
+    }
+
+    // VENDORS, CLIENTS AND CATEGORIES
+    // The lists only hold names that aren't archived. Deleting a name the ledger
+    // still uses archives it, so old rows keep pointing at it; adding it again
+    // brings it back.
+
+    // Get all vendors as list of strings
+    public List<String> getAllVendors() throws SQLException {
+        return fetchNames("SELECT name FROM vendors WHERE archived = 0 ORDER BY name");
+    }
+
+    public List<String> getAllClients() throws SQLException {
+        return fetchNames("SELECT name FROM clients WHERE archived = 0 ORDER BY name");
+    }
+
+    public List<String> fetchAllCategories() throws SQLException {
+        return fetchNames("SELECT name FROM categories WHERE archived = 0 ORDER BY name ASC");
+    }
+
+    public void insertClient(String name) throws SQLException {
+        insertName("INSERT INTO clients (name) VALUES (?) ON CONFLICT (name) DO UPDATE SET archived = 0", name);
+    }
+
+    public void deleteClient(String name) throws SQLException {
+        deleteName(clients, "DELETE FROM clients WHERE name = ? " +
+                "AND NOT EXISTS (SELECT 1 FROM income_invoices WHERE client_id = clients.id)",
+                "UPDATE clients SET archived = 1 WHERE name = ?", name);
+    }
+
+    // Insert a new vendor
+    public void insertVendor(String name) throws SQLException {
+        insertName("INSERT INTO vendors (name) VALUES (?) ON CONFLICT (name) DO UPDATE SET archived = 0", name);
+    }
+
+    // Delete vendor by name
+    public void deleteVendor(String name) throws SQLException {
+        deleteName(vendors, "DELETE FROM vendors WHERE name = ? " +
+                "AND NOT EXISTS (SELECT 1 FROM invoices WHERE vendor_id = vendors.id)",
+                "UPDATE vendors SET archived = 1 WHERE name = ?", name);
+    }
+
+    public void insertCategory(String name) throws SQLException {
+        insertName("INSERT INTO categories (name) VALUES (?) ON CONFLICT (name) DO UPDATE SET archived = 0", name);
+    }
+
+    public void deleteCategory(String name) throws SQLException {
+        deleteName(categories, "DELETE FROM categories WHERE name = ? " +
+                "AND NOT EXISTS (SELECT 1 FROM invoices WHERE category_id = categories.id) " +
+                "AND NOT EXISTS (SELECT 1 FROM income_invoices WHERE category_id = categories.id)",
+                "UPDATE categories SET archived = 1 WHERE name = ?", name);
+    }
+
+    // Renames are one row each: every invoice, income and monthly total follows the id.
+    // They fail if newName is already taken; they return false if oldName doesn't exist.
+    public boolean renameVendor(String oldName, String newName) throws SQLException {
+        return write(c -> vendors.rename(c, oldName, newName));
+    }
+
+    public boolean renameClient(String oldName, String newName) throws SQLException {
+        return write(c -> clients.rename(c, oldName, newName));
+    }
+
+    public boolean renameCategory(String oldName, String newName) throws SQLException {
+        return write(c -> categories.rename(c, oldName, newName));
+    }
+
+    private List<String> fetchNames(String sql) throws SQLException {
+        return read(c -> {
+            List<String> list = new ArrayList<>();
+            try (ResultSet rs = c.prepare(sql).executeQuery()) {
+                while (rs.next()) {
+                    list.add(rs.getString("name"));
+                }
+            }
+            return list;
+        });
+    }
+
+    private void insertName(String sql, String name) throws SQLException {
+        write(c -> {
+            PreparedStatement pstmt = c.prepare(sql);
+            pstmt.setString(1, name);
+            return pstmt.executeUpdate();
+        });
+    }
+
+    // Deletes name if no ledger row uses it, otherwise archives it
+    private void deleteName(NameDictionary names, String deleteUnusedSql, String archiveSql, String name)
+            throws SQLException {
+        writeTransaction(c -> {
+            PreparedStatement delete = c.prepare(deleteUnusedSql);
+            delete.setString(1, name);
+            if (delete.executeUpdate() > 0) {
+                names.forget(name);
+                return null;
+            }
+            PreparedStatement archive = c.prepare(archiveSql);
+            archive.setString(1, name);
+            archive.executeUpdate();
+            return null;
+        });
+    }
+
+}
@@ -0,0 +1,81 @@
+package beans;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+// Turns ledger timestamps (epoch milliseconds) into local calendar days,
+// "yyyy-MM-dd" as shown in the reports and the invoice table.
+// A ledger repeats a small set of dates over and over, so each day is worked
+// out once and kept in a small direct-mapped cache together with the range
+// of milliseconds it covers; after that a row costs an array read and two
+// compares, and allocates nothing. Safe to call from any thread: entries are
+// immutable and a lost race only means a day gets worked out twice.
+public final class DayFormat {
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    // Excel's serial number of 1970-01-01 (days counted from 1899-12-30)
+    private static final long EXCEL_EPOCH_SERIAL = 25_569;
+
+    // A power of two; about eleven years of distinct days before slots get reused
+    private static final int SLOTS = 4096;
+
+    // Spreads days over the slots. Any local day mostly maps to one slot, and a
+    // timestamp that lands next door (DST) is just a miss, never a wrong answer.
+    private static final long SLOT_OFFSET = ZONE.getRules().getOffset(Instant.EPOCH).getTotalSeconds() * 1000L;
+
+    private static final Day[] CACHE = new Day[SLOTS];
+
+    private DayFormat() {
+    }
+
+    // The local day holding epochMillis, e.g. "2024-03-31"
+    public static String format(long epochMillis) {
+        return day(epochMillis).text;
+    }
+
+    // The local day holding epochMillis as LocalDate.toEpochDay() would give it
+    public static long epochDay(long epochMillis) {
+        return day(epochMillis).epochDay;
+    }
+
+    // The local month holding epochMillis as year * 12 + month - 1, so consecutive
+    // months are consecutive numbers, e.g. for indexing an array by month
+    public static int monthIndex(long epochMillis) {
+        return day(epochMillis).monthIndex;
+    }
+
+    // The local day holding epochMillis as an Excel date serial number, for date cells
+    public static long excelSerial(long epochMillis) {
+        return day(epochMillis).epochDay + EXCEL_EPOCH_SERIAL;
+    }
+
+    private static Day day(long epochMillis) {
+        int slot = (int) Math.floorMod(Math.floorDiv(epochMillis + SLOT_OFFSET, DAY_MILLIS), (long) SLOTS);
+        Day day = CACHE[slot];
+        if (day == null || epochMillis < day.start || epochMillis >= day.end) {
+            day = new Day(Instant.ofEpochMilli(epochMillis).atZone(ZONE).toLocalDate());
+            CACHE[slot] = day;
+        }
+        return day;
+    }
+
+    // One local day: [start, end) in epoch milliseconds, usually 24 hours but not across DST changes
+    private static final class Day {
+        final long start;
+        final long end;
+        final long epochDay;
+        final int monthIndex;
+        final String text;
+
+        Day(LocalDate date) {
+            start = date.atStartOfDay(ZONE).toInstant().toEpochMilli();
+            end = date.plusDays(1).atStartOfDay(ZONE).toInstant().toEpochMilli();
+            epochDay = date.toEpochDay();
+            monthIndex = date.getYear() * 12 + date.getMonthValue() - 1;
+            text = date.toString();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package beans;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import jxl.Workbook;
+import jxl.format.Alignment;
+import jxl.format.Colour;
+import jxl.write.*;
+
+public class ExcelExporter implements ReportWriter {
+
+    // Row limit of a legacy .xls sheet
+    private static final int MAX_ROWS = 65_536;
+
+    // Every cell format of one workbook. jxl binds a format to the first
+    // workbook that writes it, so formats can't be shared between workbooks:
+    // a second .xls export in the same run came out unreadable when they were
+    // static. A format that can't be built fails the export.
+    private static final class Styles {
+        final WritableCellFormat header;
+        final WritableCellFormat money;
+        final WritableCellFormat moneyBold;
+        final WritableCellFormat normal;
+        final WritableCellFormat date;
+
+        Styles() throws WriteException {
+            WritableFont headerFont = new WritableFont(WritableFont.ARIAL, 11, WritableFont.BOLD);
+            header = new WritableCellFormat(headerFont);
+            header.setBackground(Colour.GRAY_25);
+            header.setAlignment(Alignment.CENTRE);
+            header.setWrap(true);
+
+            NumberFormat nf = new NumberFormat("$#,##0.00");
+            money = new WritableCellFormat(nf);
+            money.setAlignment(Alignment.RIGHT);
+
+            WritableFont moneyBoldFont = new WritableFont(WritableFont.ARIAL, 10, WritableFont.BOLD);
+            moneyBold = new WritableCellFormat(moneyBoldFont, nf);
+            moneyBold.setAlignment(Alignment.RIGHT);
+
+            WritableFont normalFont = new WritableFont(WritableFont.ARIAL, 10, WritableFont.NO_BOLD);
+            normal = new WritableCellFormat(normalFont);
+            normal.setWrap(true);
+
+            date = new WritableCellFormat(normalFont, new DateFormat("yyyy-MM-dd"));
+            date.setAlignment(Alignment.LEFT);
+        }
+    }
+
+    private final Styles styles;
+    private final WritableWorkbook workbook;
+    private final WritableSheet invoiceSheet;
+    private final WritableSheet incomeSheet;
+    private final Map<String, String> headerInfo;
+    private final List<ReportSheet> extraSheets = new ArrayList<>();
+    private final List<WritableCell> rowCells = new ArrayList<>(ENTRY_HEADERS.length); // reused for every row
+
+    private final TaxCalculator taxes = TaxCalculator.DEFAULT;
+    private final TaxCalculator.Accumulator invoiceTotals = new TaxCalculator.Accumulator();
+    private final TaxCalculator.Accumulator incomeTotals = new TaxCalculator.Accumulator();
+    private final TaxCalculator.Breakdown breakdown = new TaxCalculator.Breakdown(); // reused for every row
+    private int invoiceRows, incomeRows;
+
+    // With a row executor: rows are queued in chunks, see queue()
+    private final ParallelRows<CellChunk> chunks;
+    private List<FinancialEntry> pending = new ArrayList<>();
+    private WritableSheet pendingSheet;
+    private int pendingFirstRow;
+
+    // Opens a legacy .xls workbook. jxl keeps every cell in memory until close()
+    // and caps a sheet at 65,536 rows; XlsxExporter has neither limit.
+    public ExcelExporter(File file, Map<String, String> headerInfo) throws IOException {
+        this(file, headerInfo, null);
+    }
+
+    // Rows are prepared on rowExecutor if there is one, see ReportWriter.open()
+    public ExcelExporter(File file, Map<String, String> headerInfo, Executor rowExecutor) throws IOException {
+        this.chunks = rowExecutor != null ? new ParallelRows<>(rowExecutor, this::writeChunk) : null;
+        try {
+            this.styles = new Styles();
+        } catch (WriteException e) {
+            throw new IOException("Cannot create the report cell formats", e);
+        }
+        this.workbook = Workbook.createWorkbook(file);
+        this.headerInfo = headerInfo;
+        try {
+            workbook.createSheet("Summary", 0);
+            invoiceSheet = workbook.createSheet("Invoices", 1);
+            incomeSheet = workbook.createSheet("Incomes", 2);
+            writeHeaders(invoiceSheet);
+            writeHeaders(incomeSheet);
+        } catch (WriteException | RuntimeException e) {
+            // The file is already open: close it and don't leave an empty report behind
+            IOException failure = new IOException("Cannot start " + file, e);
+            try {
+                workbook.close();
+            } catch (WriteException | IOException closeFailure) {
+                failure.addSuppressed(closeFailure);
+            }
+            file.delete();
+            throw failure;
+        }
+    }
+
+    // Streams the period straight from the database into writer, then closes it.
+    // Rows are consumed as the cursor produces them; no List is built.
+    public static void exportReport(Database db, long fromTimestamp, long toTimestamp, ReportWriter writer) throws SQLException, IOException {
+        exportReport(db, fromTimestamp, toTimestamp, false, writer);
+    }
+
+    // With analytics, the LedgerAnalytics sheets for the period are added too (one more pass)
+    public static void exportReport(Database db, long fromTimestamp, long toTimestamp, boolean analytics, ReportWriter writer)
+            throws SQLException, IOException {
+        try (ReportWriter w = writer) {
+            db.forEachInvoice(null, null, fromTimestamp, toTimestamp, w::writeInvoice);
+            db.forEachIncome(fromTimestamp, toTimestamp, w::writeIncome);
+            if (analytics) {
+                for (ReportSheet sheet : LedgerAnalytics.of(db, fromTimestamp, toTimestamp, LedgerAnalytics.DEFAULT_TOP).toSheets()) {
+                    w.addSheet(sheet);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void writeInvoice(Invoice invoice) throws IOException {
+        writeRow(invoiceSheet, ++invoiceRows, invoice, invoiceTotals);
+    }
+
+    @Override
+    public void writeIncome(Income income) throws IOException {
+        writeRow(incomeSheet, ++incomeRows, income, incomeTotals);
+    }
+
+    @Override
+    public void addSheet(ReportSheet sheet) {
+        extraSheets.add(sheet);
+    }
+
+    // Collects rows into chunks whose cells are computed and built on the row
+    // executor; writeChunk() then only adds them to the sheet, on this thread,
+    // since jxl doesn't allow that from more than one thread.
+    private void queue(WritableSheet sheet, int excelRow, FinancialEntry entry) throws IOException {
+        if (sheet != pendingSheet) {
+            submitPending();
+            pendingSheet = sheet;
+        }
+        if (pending.isEmpty()) {
+            pendingFirstRow = excelRow;
+        }
+        pending.add(entry);
+        if (pending.size() == ParallelRows.CHUNK_ROWS) {
+            submitPending();
+        }
+    }
+
+    private void submitPending() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<FinancialEntry> entries = pending;
+        WritableSheet sheet = pendingSheet;
+        int firstRow = pendingFirstRow;
+        pending = new ArrayList<>();
+        chunks.submit(() -> new CellChunk(styles, sheet, entries, firstRow));
+    }
+
+    private void writeChunk(CellChunk chunk) throws IOException {
+        try {
+            for (WritableCell cell : chunk.cells) {
+                chunk.sheet.addCell(cell);
+            }
+        } catch (WriteException e) {
+            throw new IOException(e);
+        }
+        (chunk.sheet == invoiceSheet ? invoiceTotals : incomeTotals).add(chunk.totals);
+    }
+
+    // The cells of consecutive rows of one sheet, starting at excel row firstRow, with their totals
+    private static final class CellChunk {
+        final WritableSheet sheet;
+        final List<WritableCell> cells;
+        final TaxCalculator.Accumulator totals = new TaxCalculator.Accumulator();
+
+        CellChunk(Styles styles, WritableSheet sheet, List<FinancialEntry> entries, int firstRow) {
+            this.sheet = sheet;
+            cells = new ArrayList<>(entries.size() * ENTRY_HEADERS.length);
+            TaxCalculator.Breakdown tb = new TaxCalculator.Breakdown();
+            for (int i = 0; i < entries.size(); i++) {
+                FinancialEntry item = entries.get(i);
+                TaxCalculator.DEFAULT.compute(item.getAmountCents(), item.isTaxIncluded(), item.isNonTaxable(), tb, totals);
+                entryCells(styles, firstRow + i, item, tb, cells);
+            }
+        }
+    }
+
+    // Fills in the Summary sheet from the accumulated totals and writes the file
+    @Override
+    public void close() throws IOException {
+        try {
+            if (chunks != null) {
+                submitPending();
+                chunks.finish();
+            }
+            for (ReportSheet extra : extraSheets) {
+                writeExtraSheet(extra);
+            }
+            writeSummary(workbook.getSheet(0));
+            workbook.write();
+            workbook.close();
+        } catch (WriteException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void writeSummary(WritableSheet summary) throws WriteException {
+        int row = 0;
+
+        Label title = new Label(0, row++, "Quarterly Financial Report Summary", styles.header);
+        summary.addCell(title);
+        summary.mergeCells(0, 0, 3, 0);
+
+        for (Map.Entry<String, String> entry : headerInfo.entrySet()) {
+            summary.addCell(new Label(0, row, entry.getKey(), styles.header));
+            summary.addCell(new Label(1, row++, entry.getValue(), styles.normal));
+        }
+
+        row++;
+        Label invoiceTitle = new Label(0, row++, "INVOICE TOTALS", styles.header);
+        summary.addCell(invoiceTitle);
+        writeTotals(summary, row, "Invoice", invoiceTotals);
+
+        row += 6;
+        Label incomeTitle = new Label(0, row++, "INCOME TOTALS", styles.header);
+        summary.addCell(incomeTitle);
+        writeTotals(summary, row, "Income", incomeTotals);
+    }
+
+    private void writeExtraSheet(ReportSheet extra) throws WriteException {
+        WritableSheet sheet = workbook.createSheet(extra.getName(), workbook.getNumberOfSheets());
+        String[] headers = extra.getHeaders();
+        for (int i = 0; i < headers.length; i++) {
+            sheet.addCell(new Label(i, 0, headers[i], styles.header));
+            sheet.setColumnView(i, extra.getColumnWidths()[i]);
+        }
+        int row = 1;
+        for (Object[] values : extra.getRows()) {
+            for (int col = 0; col < values.length; col++) {
+                Object value = values[col];
+                if (value instanceof Money) {
+                    sheet.addCell(new jxl.write.Number(col, row, ((Money) value).getCents() / 100.0, styles.money));
+                } else if (value instanceof java.lang.Number) {
+                    sheet.addCell(new jxl.write.Number(col, row, ((java.lang.Number) value).doubleValue(), styles.normal));
+                } else if (value != null) {
+                    sheet.addCell(new Label(col, row, value.toString(), styles.normal));
+                }
+            }
+            row++;
+        }
+    }
+
+    private void writeHeaders(WritableSheet sheet) throws WriteException {
+        // Set headers with formatting
+        for (int i = 0; i < ENTRY_HEADERS.length; i++) {
+            sheet.addCell(new Label(i, 0, ENTRY_HEADERS[i], styles.header));
+        }
+
+        // Set some reasonable column widths (chars)
+        for (int i = 0; i < ENTRY_COLUMN_WIDTHS.length; i++) {
+            sheet.setColumnView(i, ENTRY_COLUMN_WIDTHS[i]);
+        }
+    }
+
+    private void writeRow(WritableSheet sheet, int excelRow, FinancialEntry item, TaxCalculator.Accumulator totals) throws IOException {
+        if (excelRow >= MAX_ROWS) {
+            throw new IOException("Too many rows for an .xls sheet (limit " + MAX_ROWS + "), export to .xlsx instead");
+        }
+        if (chunks != null) {
+            queue(sheet, excelRow, item);
+            return;
+        }
+
+        TaxCalculator.Breakdown tb = breakdown;
+        taxes.compute(item.getAmountCents(), item.isTaxIncluded(), item.isNonTaxable(), tb, totals);
+
+        rowCells.clear();
+        entryCells(styles, excelRow, item, tb, rowCells);
+        try {
+            for (WritableCell cell : rowCells) {
+                sheet.addCell(cell);
+            }
+        } catch (WriteException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // The cells of one entry row; shared by writeRow() and the queued chunks
+    // The date is a real date cell (the day's serial number), so it sorts and filters as a date.
+    private static void entryCells(Styles styles, int excelRow, FinancialEntry item, TaxCalculator.Breakdown tb, List<WritableCell> cells) {
+        cells.add(new Label(0, excelRow, item.getParty(), styles.normal));
+        cells.add(new Label(1, excelRow, item.getCategory(), styles.normal));
+        cells.add(new jxl.write.Number(2, excelRow, DayFormat.excelSerial(item.getIssuedDate()), styles.date));
+        cells.add(new Label(3, excelRow, item.getDescription(), styles.normal));
+
+        cells.add(new jxl.write.Number(4, excelRow, tb.getBase() / 100.0, styles.money));
+        cells.add(new jxl.write.Number(5, excelRow, tb.getGst() / 100.0, styles.money));
+        cells.add(new jxl.write.Number(6, excelRow, tb.getQst() / 100.0, styles.money));
+        cells.add(new jxl.write.Number(7, excelRow, tb.getTotal() / 100.0, styles.money));
+
+        cells.add(new Label(8, excelRow, item.isTaxIncluded() ? "Yes" : "No", styles.normal));
+        cells.add(new Label(9, excelRow, item.isNonTaxable() ? "Yes" : "No", styles.normal));
+    }
+
+    private void writeTotals(WritableSheet sheet, int startRow, String label, TaxCalculator.Accumulator totals) throws WriteException {
+        sheet.addCell(new Label(0, startRow++, label + " Base Total", styles.header));
+        sheet.addCell(new jxl.write.Number(1, startRow - 1, totals.getBase() / 100.0, styles.moneyBold));
+        sheet.addCell(new Label(0, startRow++, label + " GST Total", styles.header));
+        sheet.addCell(new jxl.write.Number(1, startRow - 1, totals.getGst() / 100.0, styles.moneyBold));
+        sheet.addCell(new Label(0, startRow++, label + " QST Total", styles.header));
+        sheet.addCell(new jxl.write.Number(1, startRow - 1, totals.getQst() / 100.0, styles.moneyBold));
+        sheet.addCell(new Label(0, startRow++, label + " Grand Total", styles.header));
+        sheet.addCell(new jxl.write.Number(1, startRow - 1, totals.getTotal() / 100.0, styles.moneyBold));
+        sheet.addCell(new Label(0, startRow++, label + " Non-Taxable Total", styles.header));
+        sheet.addCell(new jxl.write.Number(1, startRow - 1, totals.getNonTaxable() / 100.0, styles.moneyBold));
+    }
+
+    // An invoice (money out) or an income (money in)
+    public interface FinancialEntry {
+        boolean isIncome();
+        String getParty(); // vendor of an invoice, client of an income
+        String getCategory();
+        long getIssuedDate();
+        String getDescription();
+        long getAmountCents();
+        boolean isTaxIncluded();
+        boolean isNonTaxable();
+    }
+}
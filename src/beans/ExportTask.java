@@ -0,0 +1,199 @@
+package beans;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dialog;
+import java.awt.Window;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+
+// Exports one report period in the background behind a progress dialog.
+// The bar advances with every row written; Cancel stops the export at the next
+// row, and a cancelled or failed export deletes its half-written file.
+// .xlsx reports go through a ReportCache: a period exported before, with the
+// ledger unchanged since, is written from the cache in place of the queries.
+public class ExportTask extends SwingWorker<Integer, Integer> {
+
+    // Rows between progress updates; publishing every row would flood the EDT
+    private static final int PROGRESS_STEP = 500;
+
+    private final Database db;
+    private final long fromTimestamp;
+    private final long toTimestamp;
+    private final File file;
+    private final Map<String, String> headerInfo;
+    private final boolean analytics;
+    private final ReportCache cache;
+
+    private final Component parent;
+    private final JDialog dialog;
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JLabel statusLabel = new JLabel("Counting rows...");
+
+    private int totalRows;
+    private int rowsWritten;
+
+    // With analytics, the LedgerAnalytics sheets are added after the entries
+    public ExportTask(Component parent, Database db, long fromTimestamp, long toTimestamp, File file,
+            Map<String, String> headerInfo, boolean analytics, ReportCache cache) {
+        this.parent = parent;
+        this.db = db;
+        this.fromTimestamp = fromTimestamp;
+        this.toTimestamp = toTimestamp;
+        this.file = file;
+        this.headerInfo = headerInfo;
+        this.analytics = analytics;
+        this.cache = cache;
+
+        Window owner = SwingUtilities.getWindowAncestor(parent);
+        dialog = new JDialog(owner, "Exporting " + file.getName(), Dialog.ModalityType.DOCUMENT_MODAL);
+        dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+
+        JButton cancelBtn = new JButton("Cancel");
+        cancelBtn.addActionListener(e -> {
+            cancelBtn.setEnabled(false);
+            statusLabel.setText("Cancelling...");
+            cancel(false);
+        });
+
+        progressBar.setIndeterminate(true);
+        progressBar.setStringPainted(true);
+
+        JPanel content = new JPanel(new BorderLayout(6, 6));
+        content.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        content.add(statusLabel, BorderLayout.NORTH);
+        content.add(progressBar, BorderLayout.CENTER);
+        JPanel buttons = new JPanel();
+        buttons.add(cancelBtn);
+        content.add(buttons, BorderLayout.SOUTH);
+        dialog.add(content);
+        dialog.setSize(360, 140);
+        dialog.setLocationRelativeTo(parent);
+    }
+
+    // Queues the export on tasks and blocks input to the window until it ends
+    public void start(BackgroundTasks tasks) {
+        tasks.execute(this);
+        dialog.setVisible(true);
+    }
+
+    @Override
+    protected Integer doInBackground() throws Exception {
+        // Read before any row, so rows changed during the export can only make the key older
+        ReportCache.Key key = new ReportCache.Key(fromTimestamp, toTimestamp, analytics, db.getDataVersion());
+        ReportCache.Report cached = cache.get(key);
+
+        LedgerQuery period = new LedgerQuery().between(fromTimestamp, toTimestamp);
+        totalRows = cached != null ? cached.getRows() : db.countInvoices(period) + db.countIncomes(period);
+        publish(0);
+
+        XlsxExporter xlsx = null;
+        try {
+            ReportWriter out = ReportWriter.open(file, headerInfo, ParallelRows.defaultExecutor());
+            if (out instanceof XlsxExporter) {
+                xlsx = (XlsxExporter) out;
+                if (cached != null) {
+                    try (XlsxExporter w = xlsx) {
+                        w.replay(cached);
+                    }
+                    return cached.getRows();
+                }
+                xlsx.captureSheets(cache.getMaxBytes());
+            }
+            ExcelExporter.exportReport(db, fromTimestamp, toTimestamp, analytics, new ReportWriter() {
+                @Override
+                public void writeInvoice(Invoice invoice) throws IOException {
+                    checkCancelled();
+                    out.writeInvoice(invoice);
+                    rowWritten();
+                }
+
+                @Override
+                public void writeIncome(Income income) throws IOException {
+                    checkCancelled();
+                    out.writeIncome(income);
+                    rowWritten();
+                }
+
+                @Override
+                public void addSheet(ReportSheet sheet) throws IOException {
+                    checkCancelled();
+                    out.addSheet(sheet);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    out.close();
+                }
+            });
+        } catch (Exception e) {
+            file.delete();
+            throw e;
+        }
+
+        // Cancel pressed after the last row: the caller has already been told it was cancelled
+        if (isCancelled()) {
+            file.delete();
+        } else if (xlsx != null) {
+            ReportCache.Report report = xlsx.capturedReport();
+            if (report != null) {
+                cache.put(key, report);
+            }
+        }
+        return rowsWritten;
+    }
+
+    private void checkCancelled() throws InterruptedIOException {
+        if (isCancelled()) {
+            throw new InterruptedIOException("Export cancelled");
+        }
+    }
+
+    private void rowWritten() {
+        if (++rowsWritten % PROGRESS_STEP == 0) {
+            publish(rowsWritten);
+        }
+    }
+
+    @Override
+    protected void process(List<Integer> chunks) {
+        if (isCancelled()) {
+            return;
+        }
+        int rows = chunks.get(chunks.size() - 1);
+        progressBar.setIndeterminate(false);
+        progressBar.setMaximum(Math.max(totalRows, 1));
+        progressBar.setValue(rows);
+        statusLabel.setText(String.format("Writing rows: %,d of %,d", rows, totalRows));
+    }
+
+    @Override
+    protected void done() {
+        dialog.dispose();
+        try {
+            int rows = get();
+            JOptionPane.showMessageDialog(parent, String.format("Exported %,d rows to %s", rows, file.getAbsolutePath()));
+        } catch (CancellationException e) {
+            JOptionPane.showMessageDialog(parent, "Export cancelled.");
+        } catch (InterruptedException | ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            cause.printStackTrace();
+            JOptionPane.showMessageDialog(parent, "Export failed: " + cause.getMessage());
+        }
+    }
+}
@@ -1,6 +1,8 @@
 // Swing interface implementation
 // C:\countBeans\beans\GuiWindow.java
 
+package beans;
+
 import java.awt.*;
 import java.sql.SQLException;
 import java.util.Date;
@@ -10,12 +12,16 @@ import java.util.Map;
 import java.util.Properties;
 
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 
 public class GuiWindow extends JFrame {
 
+    // Every Database call and export runs here, never on the EDT
+    private final BackgroundTasks tasks = new BackgroundTasks();
+
     public GuiWindow() throws SQLException {
         setTitle("Conte Beans 0.1ALPHA");
         setSize(800, 400);
@@ -25,14 +31,14 @@ public class GuiWindow extends JFrame {
         JTabbedPane tabbedPane = new JTabbedPane();
 
         Database db = new Database();
+        LookupCache lookups = new LookupCache(db);
 
+        // Both category boxes show this one model; the cache keeps it in step with the database
         DefaultComboBoxModel<String> sharedCategoryModel = new DefaultComboBoxModel<>();
-        for (String cat : db.fetchAllCategories()) {
-            sharedCategoryModel.addElement(cat);
-        }
+        lookups.getCategories().bind(sharedCategoryModel);
 
-        JPanel invoicePanel = buildInvoiceTab(db, sharedCategoryModel);
-        JPanel incomePanel = buildIncomeTab(db, sharedCategoryModel);
+        JPanel invoicePanel = buildInvoiceTab(db, lookups, sharedCategoryModel);
+        JPanel incomePanel = buildIncomeTab(db, lookups, sharedCategoryModel);
         JPanel browsePanel = buildBrowseTab(db, sharedCategoryModel);
 
         tabbedPane.addTab("New Invoice", invoicePanel);
@@ -40,9 +46,16 @@ public class GuiWindow extends JFrame {
         tabbedPane.addTab("Build Report", browsePanel);
 
         add(tabbedPane);
+
+        // Fills every bound model once the tabs are built
+        tasks.submit(tabbedPane, "Error loading vendors, clients and categories: ", () -> {
+            lookups.load();
+            return null;
+        }, loaded -> {
+        });
     }
 
-    private JPanel buildInvoiceTab(Database db, DefaultComboBoxModel<String> sharedCategoryModel) {
+    private JPanel buildInvoiceTab(Database db, LookupCache lookups, DefaultComboBoxModel<String> sharedCategoryModel) {
         JPanel panel = new JPanel(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
         gbc.insets = new Insets(6, 6, 6, 6);
@@ -56,9 +69,12 @@ public class GuiWindow extends JFrame {
         panel.add(new JLabel("Vendor:"), gbc);
 
         // Vendor dropdown + Add/Delete buttons compacted
-        JComboBox<String> vendorBox = new JComboBox<>();
+        DefaultComboBoxModel<String> vendorModel = new DefaultComboBoxModel<>();
+        lookups.getVendors().bind(vendorModel);
+        JComboBox<String> vendorBox = new JComboBox<>(vendorModel);
         JButton addVendorBtn = new JButton("Add Vendor");
         JButton delVendorBtn = new JButton("Delete Vendor");
+        JButton renameVendorBtn = new JButton("Rename Vendor");
 
         gbc.gridy = row;
         gbc.insets = new Insets(6, 6, 6, 6); // Keep your padding consistent
@@ -79,17 +95,11 @@ public class GuiWindow extends JFrame {
         gbc.gridx = 3;
         panel.add(delVendorBtn, gbc);
 
-        row++;
+        // Rename Vendor button
+        gbc.gridx = 4;
+        panel.add(renameVendorBtn, gbc);
 
-        // --- Populate vendorBox from DB at startup ---
-        try {
-            List<String> vendors = db.getAllVendors(); // You'll implement this in Database class
-            for (String v : vendors) {
-                vendorBox.addItem(v);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        row++;
 
         // --- Add Vendor button action ---
         addVendorBtn.addActionListener(e -> {
@@ -103,19 +113,14 @@ public class GuiWindow extends JFrame {
                 return;
             }
 
-            if (isInComboBox(vendorBox, newVendor)) {
+            if (lookups.getVendors().contains(newVendor)) {
                 JOptionPane.showMessageDialog(panel, "Vendor already exists.");
                 return;
             }
 
-            try {
-                db.insertVendor(newVendor);
-                vendorBox.addItem(newVendor);
-                vendorBox.setSelectedItem(newVendor);
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(panel, "Error adding vendor: " + ex.getMessage());
-                ex.printStackTrace();
-            }
+            tasks.submit(addVendorBtn, "Error adding vendor: ", () -> lookups.addVendor(newVendor), added -> {
+                vendorBox.setSelectedItem(lookups.getVendors().find(newVendor));
+            });
         });
 
         // --- Delete Vendor button action ---
@@ -132,16 +137,42 @@ public class GuiWindow extends JFrame {
                     JOptionPane.YES_NO_OPTION);
 
             if (confirm == JOptionPane.YES_OPTION) {
-                try {
-                    db.deleteVendor(selectedVendor);
-                    vendorBox.removeItem(selectedVendor);
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(panel, "Error deleting vendor: " + ex.getMessage());
-                    ex.printStackTrace();
-                }
+                tasks.submit(delVendorBtn, "Error deleting vendor: ", () -> {
+                    lookups.deleteVendor(selectedVendor);
+                    return null;
+                }, deleted -> {
+                });
             }
         });
 
+        // --- Rename Vendor button action ---
+        renameVendorBtn.addActionListener(e -> {
+            String selectedVendor = (String) vendorBox.getSelectedItem();
+            if (selectedVendor == null) {
+                JOptionPane.showMessageDialog(panel, "No vendor selected to rename.");
+                return;
+            }
+
+            String input = JOptionPane.showInputDialog(panel, "Rename vendor \"" + selectedVendor + "\" to:", selectedVendor);
+            if (input == null)
+                return;
+
+            String newName = input.trim();
+            if (newName.isEmpty() || newName.equals(selectedVendor)) {
+                return;
+            }
+
+            if (lookups.getVendors().contains(newName) && !newName.equalsIgnoreCase(selectedVendor)) {
+                JOptionPane.showMessageDialog(panel, "Vendor already exists.");
+                return;
+            }
+
+            tasks.submit(renameVendorBtn, "Error renaming vendor: ",
+                    () -> lookups.renameVendor(selectedVendor, newName), renamed -> {
+                        vendorBox.setSelectedItem(lookups.getVendors().find(newName));
+                    });
+        });
+
         // --- Category dropdown + Add/Delete buttons ---
         gbc.gridx = 0;
         gbc.gridy = row;
@@ -149,13 +180,6 @@ public class GuiWindow extends JFrame {
 
         gbc.gridx = 1;
         JComboBox<String> categoryBox = new JComboBox<>(sharedCategoryModel);
-        try {
-            for (String cat : db.fetchAllCategories()) {
-                categoryBox.addItem(cat);
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-        }
         panel.add(categoryBox, gbc);
 
         gbc.gridx = 2;
@@ -182,19 +206,14 @@ public class GuiWindow extends JFrame {
                 return;
             }
 
-            if (isInComboBox(categoryBox, newCat)) {
+            if (lookups.getCategories().contains(newCat)) {
                 JOptionPane.showMessageDialog(panel, "Category already exists.");
                 return;
             }
 
-            try {
-                db.insertCategory(newCat);
-                categoryBox.addItem(newCat);
-                categoryBox.setSelectedItem(newCat);
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(panel, "Error adding category: " + ex.getMessage());
-                ex.printStackTrace();
-            }
+            tasks.submit(addCategoryBtn, "Error adding category: ", () -> lookups.addCategory(newCat), added -> {
+                categoryBox.setSelectedItem(lookups.getCategories().find(newCat));
+            });
         });
 
         // --- Delete Category button action ---
@@ -211,13 +230,11 @@ public class GuiWindow extends JFrame {
                     JOptionPane.YES_NO_OPTION);
 
             if (confirm == JOptionPane.YES_OPTION) {
-                try {
-                    db.deleteCategory(selectedCat);
-                    categoryBox.removeItem(selectedCat);
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(panel, "Error deleting category: " + ex.getMessage());
-                    ex.printStackTrace();
-                }
+                tasks.submit(delCategoryBtn, "Error deleting category: ", () -> {
+                    lookups.deleteCategory(selectedCat);
+                    return null;
+                }, deleted -> {
+                });
             }
         });
 
@@ -281,17 +298,18 @@ public class GuiWindow extends JFrame {
 
         // Functional action listener for submit
         submitBtn.addActionListener(e -> {
+            Invoice invoice;
             try {
                 String vendor = (String) vendorBox.getSelectedItem();
                 String category = (String) categoryBox.getSelectedItem();
                 java.util.Date issuedDate = dateModel.getDate();
                 String description = descField.getText();
-                double amount = Double.parseDouble(amountField.getText());
+                Money amount = Money.parse(amountField.getText());
                 boolean isTax = taxIncluded.isSelected();
                 boolean nonTaxableFlag = noTax.isSelected();
 
-                Invoice invoice = new Invoice(
-                        0, // id = 0 or whatever before DB assigns
+                invoice = new Invoice(
+                        0, // placeholder, insertInvoice() fills in the generated id
                         vendor,
                         category,
                         issuedDate.getTime(),
@@ -299,10 +317,17 @@ public class GuiWindow extends JFrame {
                         amount,
                         isTax,
                         nonTaxableFlag);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                JOptionPane.showMessageDialog(panel, "Error: " + ex.getMessage());
+                return;
+            }
 
+            tasks.submit(submitBtn, "Error: ", () -> {
                 db.insertInvoice(invoice);
-
-                JOptionPane.showMessageDialog(panel, "Invoice added!");
+                return invoice;
+            }, added -> {
+                JOptionPane.showMessageDialog(panel, "Invoice #" + added.getId() + " added!");
 
                 // Clear inputs for next entry
                 descField.setText("");
@@ -310,17 +335,13 @@ public class GuiWindow extends JFrame {
                 taxIncluded.setSelected(false);
                 noTax.setSelected(false); // <== reset nonTax checkbox too
                 dateModel.setValue(new java.util.Date());
-
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(panel, "Error: " + ex.getMessage());
-            }
+            });
         });
 
         return panel;
     }
 
-    private JPanel buildIncomeTab(Database db, DefaultComboBoxModel<String> sharedCategoryModel) {
+    private JPanel buildIncomeTab(Database db, LookupCache lookups, DefaultComboBoxModel<String> sharedCategoryModel) {
         JPanel panel = new JPanel(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
         gbc.insets = new Insets(6, 6, 6, 6);
@@ -334,7 +355,9 @@ public class GuiWindow extends JFrame {
         panel.add(new JLabel("Client:"), gbc);
 
         gbc.gridx = 1;
-        JComboBox<String> clientBox = new JComboBox<>();
+        DefaultComboBoxModel<String> clientModel = new DefaultComboBoxModel<>();
+        lookups.getClients().bind(clientModel);
+        JComboBox<String> clientBox = new JComboBox<>(clientModel);
         panel.add(clientBox, gbc);
 
         gbc.gridx = 2;
@@ -345,16 +368,11 @@ public class GuiWindow extends JFrame {
         JButton delClientBtn = new JButton("Delete Client");
         panel.add(delClientBtn, gbc);
 
-        row++;
+        gbc.gridx = 4;
+        JButton renameClientBtn = new JButton("Rename Client");
+        panel.add(renameClientBtn, gbc);
 
-        // -- Load from DB
-        try {
-            for (String c : db.getAllClients()) {
-                clientBox.addItem(c);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        row++;
 
         addClientBtn.addActionListener(e -> {
             String input = JOptionPane.showInputDialog(panel, "Enter new client name:");
@@ -367,19 +385,14 @@ public class GuiWindow extends JFrame {
                 return;
             }
 
-            if (isInComboBox(clientBox, newClient)) {
+            if (lookups.getClients().contains(newClient)) {
                 JOptionPane.showMessageDialog(panel, "Client already exists.");
                 return;
             }
 
-            try {
-                db.insertClient(newClient);
-                clientBox.addItem(newClient);
-                clientBox.setSelectedItem(newClient);
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(panel, "Error adding client: " + ex.getMessage());
-                ex.printStackTrace();
-            }
+            tasks.submit(addClientBtn, "Error adding client: ", () -> lookups.addClient(newClient), added -> {
+                clientBox.setSelectedItem(lookups.getClients().find(newClient));
+            });
         });
 
         delClientBtn.addActionListener(e -> {
@@ -395,16 +408,41 @@ public class GuiWindow extends JFrame {
                     JOptionPane.YES_NO_OPTION);
 
             if (confirm == JOptionPane.YES_OPTION) {
-                try {
-                    db.deleteClient(selectedClient);
-                    clientBox.removeItem(selectedClient);
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(panel, "Error deleting client: " + ex.getMessage());
-                    ex.printStackTrace();
-                }
+                tasks.submit(delClientBtn, "Error deleting client: ", () -> {
+                    lookups.deleteClient(selectedClient);
+                    return null;
+                }, deleted -> {
+                });
             }
         });
 
+        renameClientBtn.addActionListener(e -> {
+            String selectedClient = (String) clientBox.getSelectedItem();
+            if (selectedClient == null) {
+                JOptionPane.showMessageDialog(panel, "No client selected to rename.");
+                return;
+            }
+
+            String input = JOptionPane.showInputDialog(panel, "Rename client \"" + selectedClient + "\" to:", selectedClient);
+            if (input == null)
+                return;
+
+            String newName = input.trim();
+            if (newName.isEmpty() || newName.equals(selectedClient)) {
+                return;
+            }
+
+            if (lookups.getClients().contains(newName) && !newName.equalsIgnoreCase(selectedClient)) {
+                JOptionPane.showMessageDialog(panel, "Client already exists.");
+                return;
+            }
+
+            tasks.submit(renameClientBtn, "Error renaming client: ",
+                    () -> lookups.renameClient(selectedClient, newName), renamed -> {
+                        clientBox.setSelectedItem(lookups.getClients().find(newName));
+                    });
+        });
+
         // --- Category
         gbc.gridx = 0;
         gbc.gridy = row;
@@ -421,14 +459,6 @@ public class GuiWindow extends JFrame {
         panel.add(delCatBtn, gbc);
         row++;
 
-        try {
-            for (String cat : db.fetchAllCategories()) {
-                categoryBox.addItem(cat);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
         // --- Issued Date
         gbc.gridx = 0;
         gbc.gridy = row;
@@ -486,16 +516,17 @@ public class GuiWindow extends JFrame {
         panel.add(submitBtn, gbc);
 
         submitBtn.addActionListener(e -> {
+            Income income;
             try {
                 String client = (String) clientBox.getSelectedItem();
                 String category = (String) categoryBox.getSelectedItem();
                 java.util.Date issuedDate = dateModel.getDate();
                 String description = descField.getText();
-                double amount = Double.parseDouble(amountField.getText());
+                Money amount = Money.parse(amountField.getText());
                 boolean isTax = taxIncluded.isSelected();
                 boolean nonTaxable = noTax.isSelected();
 
-                Income income = new Income(
+                income = new Income(
                         0,
                         client,
                         category,
@@ -504,20 +535,24 @@ public class GuiWindow extends JFrame {
                         amount,
                         isTax,
                         nonTaxable);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                JOptionPane.showMessageDialog(panel, "Error: " + ex.getMessage());
+                return;
+            }
 
+            tasks.submit(submitBtn, "Error: ", () -> {
                 db.insertIncome(income);
-                JOptionPane.showMessageDialog(panel, "Income added!");
+                return income;
+            }, added -> {
+                JOptionPane.showMessageDialog(panel, "Income #" + added.getId() + " added!");
 
                 descField.setText("");
                 amountField.setText("");
                 taxIncluded.setSelected(false);
                 noTax.setSelected(false);
                 dateModel.setValue(new java.util.Date());
-
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(panel, "Error: " + ex.getMessage());
-            }
+            });
         });
 
         return panel;
@@ -598,12 +633,53 @@ private JPanel buildBrowseTab(Database db, DefaultComboBoxModel<String> sharedCa
     JTextField exportTitleField = new JTextField(20);
     filterPanel.add(exportTitleField, gbc);
 
+    gbc.gridx = 2;
+    JButton showBtn = new JButton("Show Invoices");
+    filterPanel.add(showBtn, gbc);
+
     gbc.gridx = 3;
     JButton exportBtn = new JButton("Export to Excel");
     filterPanel.add(exportBtn, gbc);
 
+    row++;
+    gbc.gridy = row; gbc.gridx = 3;
+    JCheckBox analyticsBox = new JCheckBox("Add analytics sheets");
+    analyticsBox.setToolTipText("Monthly balances and deltas, top vendors and clients, categories");
+    filterPanel.add(analyticsBox, gbc);
+
+    // --- Cash flow of the period shown, invoices and incomes together
+    row++;
+    gbc.gridy = row; gbc.gridx = 0;
+    gbc.gridwidth = 4;
+    JLabel cashFlowLabel = new JLabel(" ");
+    filterPanel.add(cashFlowLabel, gbc);
+    gbc.gridwidth = 1;
+
     panel.add(filterPanel, BorderLayout.NORTH);
 
+    // --- Invoices in the date range; the model only holds the pages around the viewport
+    JTable invoiceTable = new JTable();
+    LedgerTableModel invoiceModel = new LedgerTableModel(db, tasks);
+    invoiceModel.install(invoiceTable);
+
+    // --- Search over both ledgers, under the invoice list
+    JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+            new JScrollPane(invoiceTable), new LedgerSearchPanel(db, tasks));
+    split.setResizeWeight(0.5);
+    panel.add(split, BorderLayout.CENTER);
+
+    showBtn.addActionListener(e -> {
+        long fromTs = ((java.util.Date) fromDate.getValue()).getTime();
+        long toTs = ((java.util.Date) toDate.getValue()).getTime();
+        invoiceModel.setQuery(showBtn, new LedgerQuery().between(fromTs, toTs));
+        tasks.submit(cashFlowLabel, "Failed to compute the cash flow: ", () -> CashFlow.of(db, fromTs, toTs),
+                flow -> cashFlowLabel.setText(String.format(
+                        "In %s   Out %s   Net %s   GST to remit %s   QST to remit %s",
+                        Money.format(flow.getIn().getTotal()), Money.format(flow.getOut().getTotal()),
+                        Money.format(flow.getNetCents()), Money.format(flow.getGstRemittanceCents()),
+                        Money.format(flow.getQstRemittanceCents()))));
+    });
+
     // --- Save header info
     saveInfoBtn.addActionListener(e -> {
         try {
@@ -614,7 +690,7 @@ private JPanel buildBrowseTab(Database db, DefaultComboBoxModel<String> sharedCa
             props.setProperty("phone", phoneField.getText());
             props.setProperty("email", emailField.getText());
             props.setProperty("reportTitle", reportTitleField.getText());
-            try (FileOutputStream out = new FileOutputStream("report_info.properties")) {
+            try (FileOutputStream out = new FileOutputStream(ReportInfo.FILE_NAME)) {
                 props.store(out, "Report Header Info");
             }
             JOptionPane.showMessageDialog(panel, "Info saved successfully!");
@@ -626,7 +702,7 @@ private JPanel buildBrowseTab(Database db, DefaultComboBoxModel<String> sharedCa
 
     // --- Load saved header info
     try {
-        File file = new File("report_info.properties");
+        File file = new File(ReportInfo.FILE_NAME);
         if (file.exists()) {
             Properties props = new Properties();
             try (FileInputStream in = new FileInputStream(file)) {
@@ -643,7 +719,8 @@ private JPanel buildBrowseTab(Database db, DefaultComboBoxModel<String> sharedCa
         ex.printStackTrace();
     }
 
-    // --- Export logic
+    // --- Export logic; re-exporting a period the ledger hasn't changed in since comes from here
+    ReportCache reportCache = new ReportCache();
     exportBtn.addActionListener(e -> {
         try {
             String exportTitle = exportTitleField.getText().trim();
@@ -652,9 +729,6 @@ private JPanel buildBrowseTab(Database db, DefaultComboBoxModel<String> sharedCa
             long fromTs = ((java.util.Date) fromDate.getValue()).getTime();
             long toTs = ((java.util.Date) toDate.getValue()).getTime();
 
-            List<Invoice> invoices = db.fetchInvoices(null, null, fromTs, toTs);
-            List<Income> incomes = db.fetchIncomes(fromTs, toTs);
-
             Map<String, String> headerInfo = new LinkedHashMap<>();
             headerInfo.put("Company", companyField.getText());
             headerInfo.put("Address", addressField.getText());
@@ -664,12 +738,21 @@ private JPanel buildBrowseTab(Database db, DefaultComboBoxModel<String> sharedCa
             headerInfo.put("Report Title", reportTitleField.getText());
 
             JFileChooser fileChooser = new JFileChooser();
-            fileChooser.setSelectedFile(new File(exportTitle + ".xls"));
+            FileNameExtensionFilter xlsxFilter = new FileNameExtensionFilter("Excel Workbook (*.xlsx)", "xlsx");
+            FileNameExtensionFilter xlsFilter = new FileNameExtensionFilter("Excel 97-2003 Workbook (*.xls)", "xls");
+            fileChooser.addChoosableFileFilter(xlsxFilter);
+            fileChooser.addChoosableFileFilter(xlsFilter);
+            fileChooser.setFileFilter(xlsxFilter);
+            fileChooser.setSelectedFile(new File(exportTitle + ".xlsx"));
             int option = fileChooser.showSaveDialog(panel);
             if (option == JFileChooser.APPROVE_OPTION) {
                 File file = fileChooser.getSelectedFile();
-                ExcelExporter.exportReport(invoices, incomes, file, headerInfo);
-                JOptionPane.showMessageDialog(panel, "Exported to " + file.getAbsolutePath());
+                String name = file.getName().toLowerCase();
+                if (!name.endsWith(".xlsx") && !name.endsWith(".xls")) {
+                    file = new File(file.getPath() + (fileChooser.getFileFilter() == xlsFilter ? ".xls" : ".xlsx"));
+                }
+
+                new ExportTask(panel, db, fromTs, toTs, file, headerInfo, analyticsBox.isSelected(), reportCache).start(tasks);
             }
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -682,38 +765,15 @@ private JPanel buildBrowseTab(Database db, DefaultComboBoxModel<String> sharedCa
 
 
     // HELPER CLASSES
-    private double parseDouble(String val, double fallback) {
+    // null (no bound) when the field is blank or not a number
+    private Money parseAmount(String val) {
         try {
-            return Double.parseDouble(val);
+            return Money.parse(val);
         } catch (Exception e) {
-            return fallback;
+            return null;
         }
     }
 
-    private void updateTable(JTable table, List<Invoice> data) {
-        String[] columns = { "ID", "Vendor", "Category", "Date", "Description", "Amount", "Tax" };
-        String[][] rows = new String[data.size()][columns.length];
-        for (int i = 0; i < data.size(); i++) {
-            Invoice inv = data.get(i);
-            rows[i][0] = String.valueOf(inv.getId());
-            rows[i][1] = inv.getVendor();
-            rows[i][2] = inv.getCategory();
-            rows[i][3] = new java.text.SimpleDateFormat("yyyy-MM-dd").format(new java.util.Date(inv.getIssuedDate()));
-            rows[i][4] = inv.getDescription();
-            rows[i][5] = String.format("%.2f", inv.getAmount());
-            rows[i][6] = inv.isTaxIncluded() ? "Yes" : "No";
-        }
-        table.setModel(new javax.swing.table.DefaultTableModel(rows, columns));
-    }
-
-    private boolean isInComboBox(JComboBox<String> box, String item) {
-        for (int i = 0; i < box.getItemCount(); i++) {
-            if (box.getItemAt(i).equalsIgnoreCase(item))
-                return true;
-        }
-        return false;
-    }
-
     private List<Invoice> getFilteredInvoices(Database db, JComboBox<String> vendorBox, JComboBox<String> categoryBox,
             JSpinner fromDate, JSpinner toDate,
             JTextField minAmountField, JTextField maxAmountField) throws Exception {
@@ -722,12 +782,15 @@ private JPanel buildBrowseTab(Database db, DefaultComboBoxModel<String> sharedCa
         String category = categoryBox.getSelectedItem().toString();
         long fromTs = ((Date) fromDate.getValue()).getTime();
         long toTs = ((Date) toDate.getValue()).getTime();
-        double minAmt = parseDouble(minAmountField.getText(), 0);
-        double maxAmt = parseDouble(maxAmountField.getText(), Double.MAX_VALUE);
-
-        List<Invoice> results = db.fetchInvoices(vendor, category, fromTs, toTs);
-        results.removeIf(inv -> inv.getAmount() < minAmt || inv.getAmount() > maxAmt);
-        return results;
+        Money minAmt = parseAmount(minAmountField.getText());
+        Money maxAmt = parseAmount(maxAmountField.getText());
+
+        return db.fetchInvoices(new LedgerQuery()
+                .party(vendor)
+                .category(category)
+                .between(fromTs, toTs)
+                .amountBetween(minAmt, maxAmt)
+                .orderBy(LedgerQuery.SortField.ISSUED_DATE, false));
     }
 
 }
@@ -1,16 +1,18 @@
+package beans;
+
 public class Income implements ExcelExporter.FinancialEntry {
     private int id;
     private String client;
     private String category;
     private long issuedDate; // stored as UNIX timestamp (milliseconds)
     private String description;
-    private double amount;
+    private Money amount;
     private boolean taxIncluded;
     private boolean nonTaxable;
 
     // Constructor
     public Income(int id, String client, String category, long issuedDate,
-            String description, double amount, boolean taxIncluded, boolean nonTaxable) {
+            String description, Money amount, boolean taxIncluded, boolean nonTaxable) {
         this.id = id;
         this.client = client;
         this.category = category;
@@ -62,14 +64,18 @@ public class Income implements ExcelExporter.FinancialEntry {
         this.description = description;
     }
 
-    public double getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
+    public long getAmountCents() {
+        return amount.getCents();
+    }
+
     public boolean isTaxIncluded() {
         return taxIncluded;
     }
@@ -87,7 +93,12 @@ public class Income implements ExcelExporter.FinancialEntry {
     }
 
     @Override
-    public String getVendor() {
-        return getClient();
+    public boolean isIncome() {
+        return true;
+    }
+
+    @Override
+    public String getParty() {
+        return client;
     }
 }
@@ -1,16 +1,18 @@
+package beans;
+
 public class Invoice implements ExcelExporter.FinancialEntry {
     private int id;
     private String vendor;
     private String category;
     private long issuedDate;  // stored as UNIX timestamp (milliseconds)
     private String description;
-    private double amount;
+    private Money amount;
     private boolean taxIncluded;
     private boolean nonTaxable;
 
     // Constructor
     public Invoice(int id, String vendor, String category, long issuedDate,
-                   String description, double amount, boolean taxIncluded, boolean nonTaxable) {
+                   String description, Money amount, boolean taxIncluded, boolean nonTaxable) {
         this.id = id;
         this.vendor = vendor;
         this.category = category;
@@ -37,12 +39,19 @@ public class Invoice implements ExcelExporter.FinancialEntry {
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
 
-    public double getAmount() { return amount; }
-    public void setAmount(double amount) { this.amount = amount; }
+    public Money getAmount() { return amount; }
+    public void setAmount(Money amount) { this.amount = amount; }
+    public long getAmountCents() { return amount.getCents(); }
 
     public boolean isTaxIncluded() { return taxIncluded; }
     public void setTaxIncluded(boolean taxIncluded) { this.taxIncluded = taxIncluded; }
 
     public boolean isNonTaxable() { return nonTaxable; }
     public void setNonTaxable(boolean nonTaxable) { this.nonTaxable = nonTaxable; }
+
+    @Override
+    public boolean isIncome() { return false; }
+
+    @Override
+    public String getParty() { return vendor; }
 }
@@ -0,0 +1,261 @@
+package beans;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Month-by-month, per-party and per-category figures for a report period,
+// worked out in one pass over Database.forEachEntryRow(). Rows arrive in date
+// order as ids and cents; every figure is a slot in a primitive array indexed
+// by month or by vendor / client / category id, so the pass allocates nothing
+// per row and keeps no map. Names are looked up afterwards, and only for what
+// ends up in the results. Amounts are taxes included, incomes in and invoices
+// out, as in CashFlow; the running balance starts at zero with the period.
+// The pass also reads the year before the period, so that the first months
+// get month-over-month and year-over-year deltas too.
+public final class LedgerAnalytics {
+
+    public static final int DEFAULT_TOP = 10;
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    // One vendor, client or category line of the results
+    public static final class Ranked {
+        private final String name;
+        private final int count;
+        private final long cents;
+
+        Ranked(String name, int count, long cents) {
+            this.name = name;
+            this.count = count;
+            this.cents = cents;
+        }
+
+        public String getName() { return name; }
+        public int getCount() { return count; }
+        public long getCents() { return cents; }
+    }
+
+    private final TaxCalculator taxes;
+    private final TaxCalculator.Breakdown breakdown = new TaxCalculator.Breakdown(); // reused for every row
+    private final long fromTimestamp;
+    private final int firstMonth; // DayFormat.monthIndex() of the period's first month
+    private final int earliestMonth; // ... of the first month read for comparison
+
+    // Per month of the period
+    private final long[] in, out, gst, qst; // gst / qst: collected minus paid
+    // Net per month of the comparison year, for rows before fromTimestamp only
+    private final long[] earlierNet;
+
+    private final IdTotals vendors = new IdTotals();
+    private final IdTotals clients = new IdTotals();
+    private final IdTotals categoriesIn = new IdTotals();
+    private final IdTotals categoriesOut = new IdTotals();
+
+    private final List<Ranked> topVendors = new ArrayList<>();
+    private final List<Ranked> topClients = new ArrayList<>();
+    private final List<Ranked[]> categories = new ArrayList<>(); // { incomes, invoices } per category
+
+    private LedgerAnalytics(TaxCalculator taxes, long fromTimestamp, long toTimestamp, long comparisonStart) {
+        this.taxes = taxes;
+        this.fromTimestamp = fromTimestamp;
+        this.firstMonth = DayFormat.monthIndex(fromTimestamp);
+        this.earliestMonth = DayFormat.monthIndex(comparisonStart);
+        int months = Math.max(0, DayFormat.monthIndex(toTimestamp) - firstMonth + 1);
+        in = new long[months];
+        out = new long[months];
+        gst = new long[months];
+        qst = new long[months];
+        earlierNet = new long[firstMonth - earliestMonth + 1];
+    }
+
+    // Everything issued between the two timestamps (inclusive), with the top parties limited to top each
+    public static LedgerAnalytics of(Database db, long fromTimestamp, long toTimestamp, int top) throws SQLException {
+        // Same local day a year earlier, so the first months compare like with like
+        long comparisonStart = Instant.ofEpochMilli(fromTimestamp).atZone(ZONE).toLocalDate().minusYears(1)
+                .atStartOfDay(ZONE).toInstant().toEpochMilli();
+        LedgerAnalytics analytics = new LedgerAnalytics(TaxCalculator.DEFAULT, fromTimestamp, toTimestamp, comparisonStart);
+        db.forEachEntryRow(comparisonStart, toTimestamp, analytics::add);
+
+        for (int id : analytics.vendors.top(top)) {
+            analytics.topVendors.add(analytics.vendors.ranked(db.vendorName(id), id));
+        }
+        for (int id : analytics.clients.top(top)) {
+            analytics.topClients.add(analytics.clients.ranked(db.clientName(id), id));
+        }
+        IdTotals both = new IdTotals();
+        both.add(analytics.categoriesIn);
+        both.add(analytics.categoriesOut);
+        for (int id : both.top(Integer.MAX_VALUE)) {
+            String name = db.categoryName(id);
+            analytics.categories.add(new Ranked[] {
+                    analytics.categoriesIn.ranked(name, id), analytics.categoriesOut.ranked(name, id) });
+        }
+        return analytics;
+    }
+
+    private void add(boolean income, int partyId, int categoryId, long issuedDate, long amountCents,
+            boolean taxIncluded, boolean nonTaxable) {
+        taxes.compute(amountCents, taxIncluded, nonTaxable, breakdown);
+        long total = breakdown.getTotal();
+        if (issuedDate < fromTimestamp) {
+            earlierNet[DayFormat.monthIndex(issuedDate) - earliestMonth] += income ? total : -total;
+            return;
+        }
+        int m = DayFormat.monthIndex(issuedDate) - firstMonth;
+        if (income) {
+            in[m] += total;
+            gst[m] += breakdown.getGst();
+            qst[m] += breakdown.getQst();
+            clients.add(partyId, total);
+            categoriesIn.add(categoryId, total);
+        } else {
+            out[m] += total;
+            gst[m] -= breakdown.getGst();
+            qst[m] -= breakdown.getQst();
+            vendors.add(partyId, total);
+            categoriesOut.add(categoryId, total);
+        }
+    }
+
+    // Months in the period, the first and last ones possibly partial
+    public int getMonthCount() { return in.length; }
+
+    // "2024-03" for month 0 .. getMonthCount() - 1
+    public String getMonthLabel(int month) {
+        int index = firstMonth + month;
+        return String.format("%d-%02d", index / 12, index % 12 + 1);
+    }
+
+    public long getInCents(int month) { return in[month]; }
+    public long getOutCents(int month) { return out[month]; }
+    public long getNetCents(int month) { return in[month] - out[month]; }
+    public long getGstRemittanceCents(int month) { return gst[month]; }
+    public long getQstRemittanceCents(int month) { return qst[month]; }
+
+    // Balance at the end of the month, counting from zero at the start of the period
+    public long getClosingBalanceCents(int month) {
+        long balance = 0;
+        for (int i = 0; i <= month; i++) {
+            balance += in[i] - out[i];
+        }
+        return balance;
+    }
+
+    // Net of the month minus net of the month before
+    public long getMonthOverMonthCents(int month) {
+        return getNetCents(month) - net(firstMonth + month - 1);
+    }
+
+    // Net of the month minus net of the same month a year before
+    public long getYearOverYearCents(int month) {
+        return getNetCents(month) - net(firstMonth + month - 12);
+    }
+
+    // Net of any month from the comparison year on, by DayFormat.monthIndex()
+    private long net(int monthIndex) {
+        if (monthIndex >= firstMonth) {
+            return getNetCents(monthIndex - firstMonth);
+        }
+        return earlierNet[monthIndex - earliestMonth];
+    }
+
+    // Largest total first
+    public List<Ranked> getTopVendors() { return topVendors; }
+    public List<Ranked> getTopClients() { return topClients; }
+
+    // Every category used in the period as { incomes, invoices }, largest in + out first
+    public List<Ranked[]> getCategories() { return categories; }
+
+    // The results as extra report sheets, see ReportWriter.addSheet()
+    public List<ReportSheet> toSheets() {
+        List<ReportSheet> sheets = new ArrayList<>();
+
+        ReportSheet monthly = new ReportSheet("Monthly",
+                new String[] { "Month", "In", "Out", "Net", "Balance", "vs Prev. Month", "vs Year Before", "GST to Remit", "QST to Remit" },
+                new int[] { 10, 14, 14, 14, 14, 14, 14, 14, 14 });
+        long balance = 0;
+        for (int m = 0; m < getMonthCount(); m++) {
+            balance += getNetCents(m);
+            monthly.addRow(getMonthLabel(m), Money.ofCents(in[m]), Money.ofCents(out[m]), Money.ofCents(getNetCents(m)),
+                    Money.ofCents(balance), Money.ofCents(getMonthOverMonthCents(m)), Money.ofCents(getYearOverYearCents(m)),
+                    Money.ofCents(gst[m]), Money.ofCents(qst[m]));
+        }
+        sheets.add(monthly);
+
+        sheets.add(rankedSheet("Top Vendors", "Vendor", "Invoices", "Paid", topVendors));
+        sheets.add(rankedSheet("Top Clients", "Client", "Incomes", "Received", topClients));
+
+        ReportSheet byCategory = new ReportSheet("Categories",
+                new String[] { "Category", "Incomes", "In", "Invoices", "Out", "Net" },
+                new int[] { 20, 10, 14, 10, 14, 14 });
+        for (Ranked[] category : categories) {
+            Ranked income = category[0];
+            Ranked invoice = category[1];
+            byCategory.addRow(income.getName(), income.getCount(), Money.ofCents(income.getCents()),
+                    invoice.getCount(), Money.ofCents(invoice.getCents()), Money.ofCents(income.getCents() - invoice.getCents()));
+        }
+        sheets.add(byCategory);
+        return sheets;
+    }
+
+    private static ReportSheet rankedSheet(String name, String party, String count, String total, List<Ranked> ranked) {
+        ReportSheet sheet = new ReportSheet(name, new String[] { "Rank", party, count, total }, new int[] { 6, 25, 10, 14 });
+        for (int i = 0; i < ranked.size(); i++) {
+            Ranked r = ranked.get(i);
+            sheet.addRow(i + 1, r.getName(), r.getCount(), Money.ofCents(r.getCents()));
+        }
+        return sheet;
+    }
+
+    // Entry count and total per dictionary id, grown as larger ids turn up
+    private static final class IdTotals {
+        int[] counts = new int[256];
+        long[] cents = new long[256];
+
+        void add(int id, long amount) {
+            fit(id);
+            counts[id]++;
+            cents[id] += amount;
+        }
+
+        void add(IdTotals other) {
+            fit(other.counts.length - 1);
+            for (int id = 0; id < other.counts.length; id++) {
+                counts[id] += other.counts[id];
+                cents[id] += other.cents[id];
+            }
+        }
+
+        private void fit(int id) {
+            if (id >= counts.length) {
+                int size = Math.max(id + 1, counts.length * 2);
+                counts = Arrays.copyOf(counts, size);
+                cents = Arrays.copyOf(cents, size);
+            }
+        }
+
+        // Ids with entries, largest total first (then lowest id), at most limit of them
+        int[] top(int limit) {
+            List<Integer> ids = new ArrayList<>();
+            for (int id = 0; id < counts.length; id++) {
+                if (counts[id] > 0) {
+                    ids.add(id);
+                }
+            }
+            ids.sort((a, b) -> cents[a] != cents[b] ? Long.compare(cents[b], cents[a]) : Integer.compare(a, b));
+            int[] top = new int[Math.min(limit, ids.size())];
+            for (int i = 0; i < top.length; i++) {
+                top[i] = ids.get(i);
+            }
+            return top;
+        }
+
+        Ranked ranked(String name, int id) {
+            return id < counts.length ? new Ranked(name, counts[id], cents[id]) : new Ranked(name, 0, 0);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package beans;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+// Filter, sort and paging criteria for invoice and income reads.
+// Unset criteria are left out of the SQL entirely, and values are always bound
+// as parameters, so each combination of set criteria compiles to one statement
+// shape that Database prepares once and reuses. Party and category are given
+// by name but compared as the integer ids the ledger stores; Database looks the
+// ids up and passes them to bind().
+public class LedgerQuery {
+
+    public enum SortField {
+        ISSUED_DATE, AMOUNT, PARTY, CATEGORY
+    }
+
+    // A row's place in (issued_date, id) order, the order keyset paging walks
+    public static final class Position {
+        private final long issuedDate;
+        private final int id;
+
+        public Position(long issuedDate, int id) {
+            this.issuedDate = issuedDate;
+            this.id = id;
+        }
+
+        public long getIssuedDate() { return issuedDate; }
+        public int getId() { return id; }
+    }
+
+    private String party; // vendor for invoices, client for incomes
+    private String category;
+    private Long fromTimestamp;
+    private Long toTimestamp;
+    private Money minAmount;
+    private Money maxAmount;
+    private Boolean taxIncluded;
+    private Boolean nonTaxable;
+    private String descriptionContains;
+    private Position startingAt;
+    private SortField sortField;
+    private boolean descending;
+    private Integer limit;
+    private Integer offset;
+
+    public LedgerQuery party(String party) {
+        this.party = party;
+        return this;
+    }
+
+    public LedgerQuery category(String category) {
+        this.category = category;
+        return this;
+    }
+
+    // Inclusive issued_date range, either end may be null
+    public LedgerQuery between(Long fromTimestamp, Long toTimestamp) {
+        this.fromTimestamp = fromTimestamp;
+        this.toTimestamp = toTimestamp;
+        return this;
+    }
+
+    // Inclusive amount range, either end may be null
+    public LedgerQuery amountBetween(Money minAmount, Money maxAmount) {
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+        return this;
+    }
+
+    public LedgerQuery taxIncluded(Boolean taxIncluded) {
+        this.taxIncluded = taxIncluded;
+        return this;
+    }
+
+    public LedgerQuery nonTaxable(Boolean nonTaxable) {
+        this.nonTaxable = nonTaxable;
+        return this;
+    }
+
+    // Case-insensitive substring match on the description
+    public LedgerQuery descriptionContains(String text) {
+        this.descriptionContains = text;
+        return this;
+    }
+
+    public LedgerQuery orderBy(SortField sortField, boolean descending) {
+        this.sortField = sortField;
+        this.descending = descending;
+        return this;
+    }
+
+    public LedgerQuery page(Integer limit, Integer offset) {
+        this.limit = limit;
+        this.offset = offset;
+        return this;
+    }
+
+    // Keyset paging: only rows at or after position in (issued_date, id) order.
+    // Unlike an offset, the index seeks straight there however deep the page is.
+    public LedgerQuery startingAt(Position position) {
+        this.startingAt = position;
+        return this;
+    }
+
+    public LedgerQuery copy() {
+        LedgerQuery q = new LedgerQuery();
+        q.party = party;
+        q.category = category;
+        q.fromTimestamp = fromTimestamp;
+        q.toTimestamp = toTimestamp;
+        q.minAmount = minAmount;
+        q.maxAmount = maxAmount;
+        q.taxIncluded = taxIncluded;
+        q.nonTaxable = nonTaxable;
+        q.descriptionContains = descriptionContains;
+        q.startingAt = startingAt;
+        q.sortField = sortField;
+        q.descending = descending;
+        q.limit = limit;
+        q.offset = offset;
+        return q;
+    }
+
+    String getParty() {
+        return party;
+    }
+
+    String getCategory() {
+        return category;
+    }
+
+    // Builds the statement for one ledger table. partyColumn is vendor_id or
+    // client_id, pointing into partyTable (vendors or clients).
+    String toSql(String table, String partyColumn, String partyTable) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(table).append(" WHERE 1=1");
+        appendFilters(sql, partyColumn);
+
+        if (sortField != null) {
+            String direction = descending ? " DESC" : " ASC";
+            sql.append(" ORDER BY ").append(sortColumn(partyColumn, partyTable)).append(direction)
+                    .append(", id").append(direction);
+        }
+        if (limit != null || offset != null) {
+            sql.append(" LIMIT ? OFFSET ?");
+        }
+        return sql.toString();
+    }
+
+    // Counts the rows toSql() would return; binds exactly like it
+    String toCountSql(String table, String partyColumn, String partyTable) {
+        return "SELECT COUNT(*) FROM (" + toSql(table, partyColumn, partyTable) + ")";
+    }
+
+    // The position of every pageSize-th matching row in (issued_date, id) order,
+    // i.e. where each page starts. Sort and paging are ignored. Bind with
+    // bindFilters(), then pageSize as the last parameter.
+    String toPageStartSql(String table, String partyColumn) {
+        StringBuilder sql = new StringBuilder("SELECT issued_date, id FROM (SELECT issued_date, id, " +
+                "ROW_NUMBER() OVER (ORDER BY issued_date, id) AS rn FROM ").append(table).append(" WHERE 1=1");
+        appendFilters(sql, partyColumn);
+        return sql.append(") WHERE (rn - 1) % ? = 0 ORDER BY rn").toString();
+    }
+
+    private void appendFilters(StringBuilder sql, String partyColumn) {
+        if (isSet(party)) {
+            sql.append(" AND ").append(partyColumn).append(" = ?");
+        }
+        if (isSet(category)) {
+            sql.append(" AND category_id = ?");
+        }
+        if (fromTimestamp != null) {
+            sql.append(" AND issued_date >= ?");
+        }
+        if (toTimestamp != null) {
+            sql.append(" AND issued_date <= ?");
+        }
+        if (minAmount != null) {
+            sql.append(" AND amount_cents >= ?");
+        }
+        if (maxAmount != null) {
+            sql.append(" AND amount_cents <= ?");
+        }
+        if (taxIncluded != null) {
+            sql.append(" AND tax_included = ?");
+        }
+        if (nonTaxable != null) {
+            sql.append(" AND non_taxable = ?");
+        }
+        if (isSet(descriptionContains)) {
+            sql.append(" AND description LIKE ? ESCAPE '\\'");
+        }
+        if (startingAt != null) {
+            sql.append(" AND (issued_date, id) >= (?, ?)");
+        }
+    }
+
+    // Binds the values in the same order toSql() emitted their placeholders.
+    // partyId and categoryId are the ids of the party and category names; they
+    // are only bound when those are set.
+    void bind(PreparedStatement pstmt, int partyId, int categoryId) throws SQLException {
+        int idx = bindFilters(pstmt, partyId, categoryId);
+        if (limit != null || offset != null) {
+            pstmt.setInt(idx++, limit != null ? limit : -1); // -1 means no limit in SQLite
+            pstmt.setInt(idx++, offset != null ? offset : 0);
+        }
+    }
+
+    // Binds the WHERE clause values only; returns the next parameter index
+    int bindFilters(PreparedStatement pstmt, int partyId, int categoryId) throws SQLException {
+        int idx = 1;
+        if (isSet(party)) {
+            pstmt.setInt(idx++, partyId);
+        }
+        if (isSet(category)) {
+            pstmt.setInt(idx++, categoryId);
+        }
+        if (fromTimestamp != null) {
+            pstmt.setLong(idx++, fromTimestamp);
+        }
+        if (toTimestamp != null) {
+            pstmt.setLong(idx++, toTimestamp);
+        }
+        if (minAmount != null) {
+            pstmt.setLong(idx++, minAmount.getCents());
+        }
+        if (maxAmount != null) {
+            pstmt.setLong(idx++, maxAmount.getCents());
+        }
+        if (taxIncluded != null) {
+            pstmt.setInt(idx++, taxIncluded ? 1 : 0);
+        }
+        if (nonTaxable != null) {
+            pstmt.setInt(idx++, nonTaxable ? 1 : 0);
+        }
+        if (isSet(descriptionContains)) {
+            pstmt.setString(idx++, "%" + escapeLike(descriptionContains) + "%");
+        }
+        if (startingAt != null) {
+            pstmt.setLong(idx++, startingAt.getIssuedDate());
+            pstmt.setInt(idx++, startingAt.getId());
+        }
+        return idx;
+    }
+
+    // Party and category sort by name, not by id
+    private String sortColumn(String partyColumn, String partyTable) {
+        switch (sortField) {
+            case AMOUNT: return "amount_cents";
+            case PARTY: return "(SELECT name FROM " + partyTable + " WHERE id = " + partyColumn + ")";
+            case CATEGORY: return "(SELECT name FROM categories WHERE id = category_id)";
+            default: return "issued_date";
+        }
+    }
+
+    static boolean isSet(String value) {
+        return value != null && !value.isEmpty();
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
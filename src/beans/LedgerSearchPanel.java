@@ -0,0 +1,158 @@
+package beans;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
+
+// Search box over every invoice and income (Database.search()) with the best
+// matches listed under it. Results follow the text as it is typed: each
+// keystroke restarts a short timer and only a pause in typing runs a search,
+// so a burst of keys costs one query, not one per key.
+public class LedgerSearchPanel extends JPanel {
+
+    private static final int DEBOUNCE_MILLIS = 250;
+    private static final int MAX_RESULTS = 200;
+
+    private final Database db;
+    private final BackgroundTasks tasks;
+    private final JTextField searchField = new JTextField(30);
+    private final JLabel status = new JLabel(" ");
+    private final ResultsModel results = new ResultsModel();
+    private final Timer debounce;
+    private int generation; // bumped per search so an older one finishing late is ignored
+
+    public LedgerSearchPanel(Database db, BackgroundTasks tasks) {
+        super(new BorderLayout());
+        this.db = db;
+        this.tasks = tasks;
+
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        top.add(new JLabel("Search:"));
+        top.add(searchField);
+        top.add(status);
+        add(top, BorderLayout.NORTH);
+
+        JTable table = new JTable(results);
+        LedgerTableModel.installRenderers(table);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        debounce = new Timer(DEBOUNCE_MILLIS, e -> search());
+        debounce.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+        });
+        searchField.addActionListener(e -> {
+            debounce.stop();
+            search();
+        });
+    }
+
+    private void search() {
+        String text = searchField.getText();
+        int requested = ++generation;
+        if (text.trim().isEmpty()) {
+            results.setEntries(new ArrayList<>());
+            status.setText(" ");
+            return;
+        }
+        tasks.execute(new SwingWorker<List<ExcelExporter.FinancialEntry>, Void>() {
+            @Override
+            protected List<ExcelExporter.FinancialEntry> doInBackground() throws Exception {
+                return db.search(text, null, null, MAX_RESULTS);
+            }
+
+            @Override
+            protected void done() {
+                if (requested != generation) {
+                    return;
+                }
+                try {
+                    List<ExcelExporter.FinancialEntry> hits = get();
+                    results.setEntries(hits);
+                    status.setText(hits.isEmpty() ? "No matches"
+                            : hits.size() == MAX_RESULTS ? "Best " + MAX_RESULTS + " matches" : hits.size() + " matches");
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    cause.printStackTrace();
+                    status.setText("Search failed: " + cause.getMessage());
+                }
+            }
+        });
+    }
+
+    // The hits in rank order; invoices and incomes side by side
+    private static final class ResultsModel extends AbstractTableModel {
+        private static final String[] COLUMNS = { "Type", "Vendor / Client", "Category", "Date", "Description", "Amount" };
+
+        private List<ExcelExporter.FinancialEntry> entries = new ArrayList<>();
+
+        void setEntries(List<ExcelExporter.FinancialEntry> entries) {
+            this.entries = entries;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return entries.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            switch (column) {
+                case 3: return Long.class;
+                case 5: return Money.class;
+                default: return String.class;
+            }
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            ExcelExporter.FinancialEntry entry = entries.get(row);
+            switch (column) {
+                case 0: return entry.isIncome() ? "Income" : "Invoice";
+                case 1: return entry.getParty();
+                case 2: return entry.getCategory();
+                case 3: return entry.getIssuedDate();
+                case 4: return entry.getDescription();
+                case 5: return Money.ofCents(entry.getAmountCents());
+                default: return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package beans;
+
+import java.awt.Component;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.JTable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+
+// Table model over an invoice query of any size.
+// Up front it only loads the row count and where each page of PAGE_SIZE rows
+// starts; pages are fetched in the background by keyset (see
+// LedgerQuery.startingAt()) as the table asks for their rows, and only the
+// MAX_PAGES most recently used are kept. Cells hold raw values that the
+// renderers from install() format when painting, so rows that are never
+// scrolled into view cost nothing.
+// Everything here runs on the EDT; only the database reads go to the worker.
+public class LedgerTableModel extends AbstractTableModel {
+
+    static final int PAGE_SIZE = 200;
+    private static final int MAX_PAGES = 10;
+
+    private static final String[] COLUMNS = { "ID", "Vendor", "Category", "Date", "Description", "Amount", "Tax" };
+
+    private final Database db;
+    private final BackgroundTasks tasks;
+
+    private LedgerQuery query;
+    private List<LedgerQuery.Position> pageStarts = Collections.emptyList();
+    private int rowCount;
+    private int generation; // bumped on every reload so pages still in flight for the old query are dropped
+    private final Set<Integer> loading = new HashSet<>();
+    private final Map<Integer, List<Invoice>> pages = new LinkedHashMap<Integer, List<Invoice>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Invoice>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    public LedgerTableModel(Database db, BackgroundTasks tasks) {
+        this.db = db;
+        this.tasks = tasks;
+    }
+
+    // Makes this table's model and sets up the renderers that format its cells.
+    // Don't give the table a row sorter: sorting would read every row.
+    public void install(JTable table) {
+        table.setModel(this);
+        installRenderers(table);
+    }
+
+    // Dates (Long epoch millis) as yyyy-MM-dd and right-aligned amounts; shared with LedgerSearchPanel
+    static void installRenderers(JTable table) {
+        table.setDefaultRenderer(Long.class, new DefaultTableCellRenderer() {
+            @Override
+            protected void setValue(Object value) {
+                setText(value == null ? "" : DayFormat.format((Long) value));
+            }
+        });
+        DefaultTableCellRenderer amounts = new DefaultTableCellRenderer();
+        amounts.setHorizontalAlignment(SwingConstants.RIGHT);
+        table.setDefaultRenderer(Money.class, amounts);
+    }
+
+    // Shows the invoices matching query in date order; its sort and paging are ignored.
+    // source is disabled while the count runs.
+    public void setQuery(Component source, LedgerQuery query) {
+        LedgerQuery base = query.copy()
+                .orderBy(LedgerQuery.SortField.ISSUED_DATE, false)
+                .page(null, null)
+                .startingAt(null);
+        tasks.submit(source, "Error loading invoices: ", () -> new Layout(db, base), layout -> {
+            this.query = base;
+            pageStarts = layout.pageStarts;
+            rowCount = layout.rowCount;
+            generation++;
+            loading.clear();
+            pages.clear();
+            fireTableDataChanged();
+        });
+    }
+
+    // Re-reads the current query, e.g. after the ledger changed
+    public void refresh(Component source) {
+        if (query != null) {
+            setQuery(source, query);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (column) {
+            case 0: return Integer.class;
+            case 3: return Long.class;
+            case 5: return Money.class;
+            case 6: return Boolean.class;
+            default: return String.class;
+        }
+    }
+
+    // Rows whose page isn't loaded yet read as empty and ask for the page
+    @Override
+    public Object getValueAt(int row, int column) {
+        int pageIndex = row / PAGE_SIZE;
+        List<Invoice> page = pages.get(pageIndex);
+        if (page == null) {
+            load(pageIndex);
+            return null;
+        }
+        int offset = row % PAGE_SIZE;
+        if (offset >= page.size()) {
+            return null; // rows deleted since the count
+        }
+        Invoice invoice = page.get(offset);
+        switch (column) {
+            case 0: return invoice.getId();
+            case 1: return invoice.getVendor();
+            case 2: return invoice.getCategory();
+            case 3: return invoice.getIssuedDate();
+            case 4: return invoice.getDescription();
+            case 5: return invoice.getAmount();
+            case 6: return invoice.isTaxIncluded();
+            default: return null;
+        }
+    }
+
+    private void load(int pageIndex) {
+        if (pageIndex >= pageStarts.size() || !loading.add(pageIndex)) {
+            return;
+        }
+        int requested = generation;
+        LedgerQuery pageQuery = query.copy().startingAt(pageStarts.get(pageIndex)).page(PAGE_SIZE, null);
+        tasks.execute(new SwingWorker<List<Invoice>, Void>() {
+            @Override
+            protected List<Invoice> doInBackground() throws SQLException {
+                return db.fetchInvoices(pageQuery);
+            }
+
+            @Override
+            protected void done() {
+                if (requested != generation) {
+                    return;
+                }
+                loading.remove(pageIndex);
+                try {
+                    pages.put(pageIndex, get());
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace(); // left empty; asked for again on the next repaint
+                    return;
+                }
+                int first = pageIndex * PAGE_SIZE;
+                int last = Math.min(rowCount, first + PAGE_SIZE) - 1;
+                if (first <= last) {
+                    fireTableRowsUpdated(first, last);
+                }
+            }
+        });
+    }
+
+    // Row count and page starts of one query, read on the worker
+    private static final class Layout {
+        final int rowCount;
+        final List<LedgerQuery.Position> pageStarts;
+
+        Layout(Database db, LedgerQuery query) throws SQLException {
+            rowCount = db.countInvoices(query);
+            pageStarts = db.fetchInvoicePageStarts(query, PAGE_SIZE);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package beans;
+
+import java.sql.SQLException;
+
+// Vendors, clients and categories, read from the database once and then kept
+// up to date in place by the add/delete methods here. Each change goes to the
+// database first and only reaches the cached list if the write succeeded.
+public class LookupCache {
+
+    private final Database db;
+    private final LookupList vendors = new LookupList();
+    private final LookupList clients = new LookupList();
+    private final LookupList categories = new LookupList();
+
+    public LookupCache(Database db) {
+        this.db = db;
+    }
+
+    // (Re)reads all three lists; bound models are refilled
+    public void load() throws SQLException {
+        vendors.replaceAll(db.getAllVendors());
+        clients.replaceAll(db.getAllClients());
+        categories.replaceAll(db.fetchAllCategories());
+    }
+
+    public LookupList getVendors() {
+        return vendors;
+    }
+
+    public LookupList getClients() {
+        return clients;
+    }
+
+    public LookupList getCategories() {
+        return categories;
+    }
+
+    // The add methods return false, without touching the database, when the
+    // name is already there in any letter case.
+    public boolean addVendor(String name) throws SQLException {
+        if (vendors.contains(name)) {
+            return false;
+        }
+        db.insertVendor(name);
+        vendors.insert(name);
+        return true;
+    }
+
+    public void deleteVendor(String name) throws SQLException {
+        db.deleteVendor(name);
+        vendors.remove(name);
+    }
+
+    // Past ledger rows show the new name too. Returns false if oldName was already gone.
+    public boolean renameVendor(String oldName, String newName) throws SQLException {
+        if (!db.renameVendor(oldName, newName)) {
+            return false;
+        }
+        vendors.remove(oldName);
+        vendors.insert(newName);
+        return true;
+    }
+
+    public boolean addClient(String name) throws SQLException {
+        if (clients.contains(name)) {
+            return false;
+        }
+        db.insertClient(name);
+        clients.insert(name);
+        return true;
+    }
+
+    public void deleteClient(String name) throws SQLException {
+        db.deleteClient(name);
+        clients.remove(name);
+    }
+
+    public boolean renameClient(String oldName, String newName) throws SQLException {
+        if (!db.renameClient(oldName, newName)) {
+            return false;
+        }
+        clients.remove(oldName);
+        clients.insert(newName);
+        return true;
+    }
+
+    public boolean addCategory(String name) throws SQLException {
+        if (categories.contains(name)) {
+            return false;
+        }
+        db.insertCategory(name);
+        categories.insert(name);
+        return true;
+    }
+
+    public void deleteCategory(String name) throws SQLException {
+        db.deleteCategory(name);
+        categories.remove(name);
+    }
+
+    public boolean renameCategory(String oldName, String newName) throws SQLException {
+        if (!db.renameCategory(oldName, newName)) {
+            return false;
+        }
+        categories.remove(oldName);
+        categories.insert(newName);
+        return true;
+    }
+}
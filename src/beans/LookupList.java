@@ -0,0 +1,129 @@
+package beans;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.SwingUtilities;
+
+// One reference list (vendors, clients or categories) kept sorted and
+// deduplicated case-insensitively, so membership is a binary search.
+// Changes are applied in place and announced to listeners with the index they
+// happened at, which is all a list model needs to stay in step.
+public class LookupList {
+
+    public interface Listener {
+        void inserted(int index, String name);
+
+        void removed(int index, String name);
+
+        // The whole list was replaced, e.g. by the first load
+        void reloaded(List<String> names);
+    }
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public synchronized boolean contains(String name) {
+        return indexOf(name) >= 0;
+    }
+
+    // The stored spelling of name, or null if it isn't in the list
+    public synchronized String find(String name) {
+        int index = indexOf(name);
+        return index >= 0 ? names.get(index) : null;
+    }
+
+    public synchronized List<String> snapshot() {
+        return new ArrayList<>(names);
+    }
+
+    public synchronized int size() {
+        return names.size();
+    }
+
+    // Replaces the contents. Names differing only in case keep their first spelling.
+    synchronized void replaceAll(Collection<String> all) {
+        names.clear();
+        for (String name : all) {
+            int index = indexOf(name);
+            if (index < 0) {
+                names.add(-index - 1, name);
+            }
+        }
+        List<String> copy = Collections.unmodifiableList(new ArrayList<>(names));
+        for (Listener l : listeners) {
+            l.reloaded(copy);
+        }
+    }
+
+    // Returns the index name went in at, or -1 if it was already there
+    synchronized int insert(String name) {
+        int index = indexOf(name);
+        if (index >= 0) {
+            return -1;
+        }
+        index = -index - 1;
+        names.add(index, name);
+        for (Listener l : listeners) {
+            l.inserted(index, name);
+        }
+        return index;
+    }
+
+    // Returns the index name was removed from, or -1 if it wasn't there
+    synchronized int remove(String name) {
+        int index = indexOf(name);
+        if (index < 0) {
+            return -1;
+        }
+        String stored = names.remove(index);
+        for (Listener l : listeners) {
+            l.removed(index, stored);
+        }
+        return index;
+    }
+
+    // Registers l and hands it the current contents in the same step, so it can't miss a change
+    public synchronized void addListener(Listener l) {
+        listeners.add(l);
+        l.reloaded(Collections.unmodifiableList(new ArrayList<>(names)));
+    }
+
+    public void removeListener(Listener l) {
+        listeners.remove(l);
+    }
+
+    // Keeps model a copy of this list. Changes can come from any thread; the
+    // model is only touched on the EDT, in the order the changes happened.
+    public void bind(DefaultComboBoxModel<String> model) {
+        addListener(new Listener() {
+            @Override
+            public void inserted(int index, String name) {
+                SwingUtilities.invokeLater(() -> model.insertElementAt(name, index));
+            }
+
+            @Override
+            public void removed(int index, String name) {
+                SwingUtilities.invokeLater(() -> model.removeElementAt(index));
+            }
+
+            @Override
+            public void reloaded(List<String> all) {
+                SwingUtilities.invokeLater(() -> {
+                    model.removeAllElements();
+                    for (String name : all) {
+                        model.addElement(name);
+                    }
+                });
+            }
+        });
+    }
+
+    private int indexOf(String name) {
+        return Collections.binarySearch(names, name, String.CASE_INSENSITIVE_ORDER);
+    }
+}
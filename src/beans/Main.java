@@ -1,7 +1,17 @@
+package beans;
+
 import java.sql.SQLException;
 
 public class Main {
+    // With arguments it runs one command-line job and exits (see Cli); without, it opens the window
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(Cli.run(args));
+        }
+        startGui();
+    }
+
+    private static void startGui() {
         javax.swing.SwingUtilities.invokeLater(() -> {
             try {
                 GuiWindow window = new GuiWindow();
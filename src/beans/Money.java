@@ -0,0 +1,98 @@
+package beans;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.regex.Pattern;
+
+// An amount of money held as whole cents.
+// Ledger amounts are stored, taxed and summed as longs so totals come out
+// exact and identical on every run, instead of drifting like doubles do.
+public final class Money implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0);
+
+    // Commas are only accepted as thousands separators: 1,234 or 12,345,678.90
+    private static final Pattern GROUPED = Pattern.compile("[+-]?\\d{1,3}(,\\d{3})+(\\.\\d*)?");
+
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    // Parses user input such as "12.5", "-3", "1,234.56" or "$99.99".
+    // More than two decimals are rounded half-up to the cent. A decimal comma
+    // ("12,50") is rejected rather than read as a thousands separator.
+    public static Money parse(String text) {
+        if (text == null) {
+            throw new NumberFormatException("Amount is empty");
+        }
+        String cleaned = text.trim().replace("$", "").replace(" ", "");
+        if (cleaned.isEmpty()) {
+            throw new NumberFormatException("Amount is empty");
+        }
+        if (cleaned.indexOf(',') >= 0) {
+            if (!GROUPED.matcher(cleaned).matches()) {
+                throw new NumberFormatException("Misplaced comma in amount: " + text.trim());
+            }
+            cleaned = cleaned.replace(",", "");
+        }
+        BigDecimal value = new BigDecimal(cleaned).setScale(2, RoundingMode.HALF_UP);
+        return ofCents(value.movePointRight(2).longValueExact());
+    }
+
+    public long getCents() {
+        return cents;
+    }
+
+    // For spreadsheet cells only; never sum these
+    public double toDouble() {
+        return cents / 100.0;
+    }
+
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    // Plain "1234.56" / "-0.05" form, as typed into the amount fields
+    public static String format(long cents) {
+        long abs = Math.abs(cents);
+        long fraction = abs % 100;
+        return (cents < 0 ? "-" : "") + (abs / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    // numerator / denominator rounded to the nearest whole number, halves away from zero.
+    // denominator must be positive.
+    static long divideRounded(long numerator, long denominator) {
+        long quotient = (2 * Math.abs(numerator) + denominator) / (2 * denominator);
+        return numerator < 0 ? -quotient : quotient;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money && ((Money) o).cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    @Override
+    public String toString() {
+        return format(cents);
+    }
+}
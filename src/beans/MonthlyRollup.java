@@ -0,0 +1,251 @@
+package beans;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+// Keeps the monthly_totals table in step with the ledger.
+// It holds one row per (kind, month, category, vendor/client) with the entry
+// count and the base / GST / QST / total / non-taxable sums in cents. Each row
+// is split by the same TaxCalculator the exports use, so a month's rollup
+// always matches what an export of that month would total.
+//
+// Database passes every ledger write through add() / subtract(), then flush()es
+// the net change inside the write's own transaction. Months are calendar months
+// in the JVM's time zone, as in the exported dates; after moving the books to
+// another zone, rebuild(). Changes are collected by name and written keyed by
+// the category and vendor/client ids, so renames never touch the table.
+public class MonthlyRollup {
+
+    public static final String INVOICE = "invoice";
+    public static final String INCOME = "income";
+
+    static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS monthly_totals (" +
+            "kind TEXT NOT NULL, " + // invoice or income
+            "period INTEGER NOT NULL, " + // yyyymm
+            "category_id INTEGER NOT NULL REFERENCES categories (id), " +
+            "party_id INTEGER NOT NULL, " + // vendors.id for invoices, clients.id for incomes
+            "entries INTEGER NOT NULL, " +
+            "base_cents INTEGER NOT NULL, " +
+            "gst_cents INTEGER NOT NULL, " +
+            "qst_cents INTEGER NOT NULL, " +
+            "total_cents INTEGER NOT NULL, " +
+            "non_taxable_cents INTEGER NOT NULL, " +
+            "PRIMARY KEY (kind, period, category_id, party_id)) WITHOUT ROWID";
+
+    private static final String UPSERT_SQL = "INSERT INTO monthly_totals " +
+            "(kind, period, category_id, party_id, entries, base_cents, gst_cents, qst_cents, total_cents, non_taxable_cents) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (kind, period, category_id, party_id) DO UPDATE SET " +
+            "entries = entries + excluded.entries, " +
+            "base_cents = base_cents + excluded.base_cents, " +
+            "gst_cents = gst_cents + excluded.gst_cents, " +
+            "qst_cents = qst_cents + excluded.qst_cents, " +
+            "total_cents = total_cents + excluded.total_cents, " +
+            "non_taxable_cents = non_taxable_cents + excluded.non_taxable_cents";
+    private static final String PRUNE_SQL = "DELETE FROM monthly_totals " +
+            "WHERE kind = ? AND period = ? AND category_id = ? AND party_id = ? AND entries = 0";
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    // Indexes into a pending delta
+    private static final int ENTRIES = 0, BASE = 1, GST = 2, QST = 3, TOTAL = 4, NON_TAXABLE = 5;
+
+    private final TaxCalculator taxes;
+    private final NameDictionary vendors;
+    private final NameDictionary clients;
+    private final NameDictionary categories;
+    private final TaxCalculator.Breakdown row = new TaxCalculator.Breakdown();
+    private final Map<Key, long[]> pending = new HashMap<>();
+
+    public MonthlyRollup(TaxCalculator taxes, NameDictionary vendors, NameDictionary clients,
+            NameDictionary categories) {
+        this.taxes = taxes;
+        this.vendors = vendors;
+        this.clients = clients;
+        this.categories = categories;
+    }
+
+    // yyyymm of a ledger timestamp
+    public static int period(long timestamp) {
+        LocalDate date = Instant.ofEpochMilli(timestamp).atZone(ZONE).toLocalDate();
+        return date.getYear() * 100 + date.getMonthValue();
+    }
+
+    public void add(String kind, ExcelExporter.FinancialEntry entry) {
+        apply(kind, entry, 1);
+    }
+
+    public void subtract(String kind, ExcelExporter.FinancialEntry entry) {
+        apply(kind, entry, -1);
+    }
+
+    private void apply(String kind, ExcelExporter.FinancialEntry entry, int sign) {
+        accumulate(kind, entry.getIssuedDate(), entry.getCategory(), entry.getParty(),
+                entry.getAmountCents(), entry.isTaxIncluded(), entry.isNonTaxable(), sign);
+    }
+
+    private void accumulate(String kind, long issuedDate, String category, String party,
+            long amountCents, boolean taxIncluded, boolean nonTaxable, int sign) {
+        taxes.compute(amountCents, taxIncluded, nonTaxable, row);
+        long[] delta = pending.computeIfAbsent(new Key(kind, period(issuedDate), category, party), k -> new long[6]);
+        delta[ENTRIES] += sign;
+        delta[BASE] += sign * row.getBase();
+        delta[GST] += sign * row.getGst();
+        delta[QST] += sign * row.getQst();
+        delta[TOTAL] += sign * row.getTotal();
+        if (nonTaxable) {
+            delta[NON_TAXABLE] += sign * row.getBase();
+        }
+    }
+
+    // Writes the pending changes on c, which must be inside the ledger write's transaction.
+    // Rows whose last entry went away are dropped.
+    public void flush(ConnectionPool.PooledConnection c) throws SQLException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        PreparedStatement upsert = c.prepare(UPSERT_SQL);
+        PreparedStatement prune = c.prepare(PRUNE_SQL);
+        try {
+            boolean pruning = false;
+            for (Map.Entry<Key, long[]> e : pending.entrySet()) {
+                Key key = e.getKey();
+                long[] delta = e.getValue();
+                int categoryId = categories.intern(c, key.category);
+                int partyId = parties(key.kind).intern(c, key.party);
+                bindKey(upsert, key, categoryId, partyId);
+                for (int i = 0; i < delta.length; i++) {
+                    upsert.setLong(5 + i, delta[i]);
+                }
+                upsert.addBatch();
+                if (delta[ENTRIES] < 0) {
+                    bindKey(prune, key, categoryId, partyId);
+                    prune.addBatch();
+                    pruning = true;
+                }
+            }
+            upsert.executeBatch();
+            if (pruning) {
+                prune.executeBatch();
+            }
+        } catch (SQLException e) {
+            upsert.clearBatch();
+            prune.clearBatch();
+            throw e;
+        } finally {
+            pending.clear();
+        }
+    }
+
+    // Drops pending changes after the ledger write they belonged to was rolled back
+    public void discard() {
+        pending.clear();
+    }
+
+    // Recomputes the whole table from the ledger. Run inside a transaction.
+    public void rebuild(ConnectionPool.PooledConnection c) throws SQLException {
+        discard();
+        try (Statement stmt = c.getConnection().createStatement()) {
+            stmt.execute("DELETE FROM monthly_totals");
+            collect(stmt, INVOICE, "SELECT p.name AS party, k.name AS category, " +
+                    "issued_date, amount_cents, tax_included, non_taxable FROM invoices " +
+                    "JOIN vendors p ON p.id = vendor_id JOIN categories k ON k.id = category_id");
+            collect(stmt, INCOME, "SELECT p.name AS party, k.name AS category, " +
+                    "issued_date, amount_cents, tax_included, non_taxable FROM income_invoices " +
+                    "JOIN clients p ON p.id = client_id JOIN categories k ON k.id = category_id");
+        }
+        flush(c);
+    }
+
+    private void collect(Statement stmt, String kind, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                accumulate(kind, rs.getLong("issued_date"), rs.getString("category"), rs.getString("party"),
+                        rs.getLong("amount_cents"), rs.getInt("tax_included") == 1, rs.getInt("non_taxable") == 1, 1);
+            }
+        }
+    }
+
+    // Vendors for invoices, clients for incomes
+    NameDictionary parties(String kind) {
+        return INVOICE.equals(kind) ? vendors : clients;
+    }
+
+    private static void bindKey(PreparedStatement pstmt, Key key, int categoryId, int partyId) throws SQLException {
+        pstmt.setString(1, key.kind);
+        pstmt.setInt(2, key.period);
+        pstmt.setInt(3, categoryId);
+        pstmt.setInt(4, partyId);
+    }
+
+    // Reads the sums columns of a monthly_totals row (or a SUM over rows) into an accumulator
+    static TaxCalculator.Accumulator readTotals(ResultSet rs) throws SQLException {
+        TaxCalculator.Accumulator totals = new TaxCalculator.Accumulator();
+        totals.count = rs.getLong("entries");
+        totals.base = rs.getLong("base_cents");
+        totals.gst = rs.getLong("gst_cents");
+        totals.qst = rs.getLong("qst_cents");
+        totals.total = rs.getLong("total_cents");
+        totals.nonTaxable = rs.getLong("non_taxable_cents");
+        return totals;
+    }
+
+    // One rollup row
+    public static final class Total {
+        private final String kind;
+        private final int period;
+        private final String category;
+        private final String party;
+        private final TaxCalculator.Accumulator totals;
+
+        Total(String kind, int period, String category, String party, TaxCalculator.Accumulator totals) {
+            this.kind = kind;
+            this.period = period;
+            this.category = category;
+            this.party = party;
+            this.totals = totals;
+        }
+
+        public String getKind() { return kind; }
+        public int getPeriod() { return period; }
+        public String getCategory() { return category; }
+        public String getParty() { return party; }
+        public TaxCalculator.Accumulator getTotals() { return totals; }
+    }
+
+    private static final class Key {
+        final String kind;
+        final int period;
+        final String category;
+        final String party;
+
+        Key(String kind, int period, String category, String party) {
+            this.kind = kind;
+            this.period = period;
+            this.category = category;
+            this.party = party;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return period == k.period && kind.equals(k.kind) && category.equals(k.category) && party.equals(k.party);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, period, category, party);
+        }
+    }
+}
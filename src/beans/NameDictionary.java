@@ -0,0 +1,121 @@
+package beans;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The id <-> name mapping of one reference table (vendors, clients or categories).
+// Ledger rows only store the integer id; Database goes through this cache to
+// turn ids back into names when reading rows and names into ids when writing
+// them, so neither side needs a join. A miss is looked up on the caller's
+// connection, which also picks up names another connection added.
+public class NameDictionary {
+
+    private final String table;
+    private final String findIdSql;
+    private final String findNameSql;
+    private final String insertSql;
+    private final String renameSql;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+    public NameDictionary(String table) {
+        this.table = table;
+        findIdSql = "SELECT id FROM " + table + " WHERE name = ?";
+        findNameSql = "SELECT name FROM " + table + " WHERE id = ?";
+        insertSql = "INSERT INTO " + table + " (name) VALUES (?)";
+        renameSql = "UPDATE " + table + " SET name = ? WHERE name = ?";
+    }
+
+    // The id of name, or null if the table doesn't have it
+    public Integer findId(ConnectionPool.PooledConnection c, String name) throws SQLException {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        PreparedStatement pstmt = c.prepare(findIdSql);
+        pstmt.setString(1, name);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) {
+                return null;
+            }
+            id = rs.getInt(1);
+        }
+        remember(id, name);
+        return id;
+    }
+
+    // The id of name, adding it to the table first if it isn't there. c must be the writer.
+    public int intern(ConnectionPool.PooledConnection c, String name) throws SQLException {
+        if (name == null) {
+            throw new SQLException("Missing name for " + table);
+        }
+        Integer id = findId(c, name);
+        if (id != null) {
+            return id;
+        }
+        PreparedStatement pstmt = c.prepare(insertSql);
+        pstmt.setString(1, name);
+        pstmt.executeUpdate();
+        try (ResultSet rs = c.prepare("SELECT last_insert_rowid()").executeQuery()) {
+            rs.next();
+            id = rs.getInt(1);
+        }
+        remember(id, name);
+        return id;
+    }
+
+    public String name(ConnectionPool.PooledConnection c, int id) throws SQLException {
+        String name = names.get(id);
+        if (name != null) {
+            return name;
+        }
+        PreparedStatement pstmt = c.prepare(findNameSql);
+        pstmt.setInt(1, id);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("No row with id " + id + " in " + table);
+            }
+            name = rs.getString(1);
+        }
+        remember(id, name);
+        return name;
+    }
+
+    // Renames the row in place; every ledger row pointing at it follows.
+    // Returns false if there was no row called oldName. c must be the writer.
+    public boolean rename(ConnectionPool.PooledConnection c, String oldName, String newName) throws SQLException {
+        PreparedStatement pstmt = c.prepare(renameSql);
+        pstmt.setString(1, newName);
+        pstmt.setString(2, oldName);
+        if (pstmt.executeUpdate() == 0) {
+            return false;
+        }
+        Integer id = ids.remove(oldName);
+        if (id != null) {
+            remember(id, newName);
+        }
+        return true;
+    }
+
+    // Drops name after its row was deleted
+    public void forget(String name) {
+        Integer id = ids.remove(name);
+        if (id != null) {
+            names.remove(id);
+        }
+    }
+
+    // Drops everything, e.g. after a rollback undid rows intern() had cached
+    public void clear() {
+        ids.clear();
+        names.clear();
+    }
+
+    private void remember(int id, String name) {
+        ids.put(name, id);
+        names.put(id, name);
+    }
+}
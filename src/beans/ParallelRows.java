@@ -0,0 +1,83 @@
+package beans;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+// Runs the per-row work of an export (tax split, date and cell formatting) on
+// an executor while the writing thread keeps reading the cursor and writing
+// the file. The writer cuts its rows into chunks of consecutive rows as they
+// arrive and submit()s each one; up to IN_FLIGHT of them are prepared at a
+// time and finished chunks are handed to the sink in submission order, on the
+// writing thread, so the file comes out exactly as a row-by-row export would
+// and memory holds IN_FLIGHT chunks, not the period.
+public final class ParallelRows<T> {
+
+    // Rows per chunk: big enough to amortize a task, small enough to keep every core busy
+    public static final int CHUNK_ROWS = 2048;
+    private static final int IN_FLIGHT = 16;
+
+    // Writes one prepared chunk; always called on the thread that submits them
+    public interface Sink<T> {
+        void write(T chunk) throws IOException;
+    }
+
+    private final Executor executor;
+    private final Sink<T> sink;
+    private final ArrayDeque<CompletableFuture<T>> inFlight = new ArrayDeque<>();
+
+    public ParallelRows(Executor executor, Sink<T> sink) {
+        this.executor = executor;
+        this.sink = sink;
+    }
+
+    // Where exports prepare their rows unless told otherwise: the common fork/join
+    // pool, or nowhere (null) on a single core, where handing rows to another
+    // thread only adds work
+    public static Executor defaultExecutor() {
+        return Runtime.getRuntime().availableProcessors() > 1 ? ForkJoinPool.commonPool() : null;
+    }
+
+    // Starts preparing chunk, after writing the finished chunks at the head of the
+    // queue; waits for the oldest one if IN_FLIGHT are already pending
+    public void submit(Supplier<T> chunk) throws IOException {
+        while (!inFlight.isEmpty() && (inFlight.size() >= IN_FLIGHT || inFlight.peek().isDone())) {
+            writeOldest();
+        }
+        inFlight.add(CompletableFuture.supplyAsync(chunk, executor));
+    }
+
+    // Writes every chunk still pending, in order
+    public void finish() throws IOException {
+        while (!inFlight.isEmpty()) {
+            writeOldest();
+        }
+    }
+
+    private void writeOldest() throws IOException {
+        try {
+            T chunk;
+            try {
+                chunk = inFlight.poll().join();
+            } catch (CompletionException e) {
+                // Preparing rows doesn't do I/O, so this is a bug in the preparer; rethrow it as is
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+            sink.write(chunk);
+        } catch (IOException | RuntimeException e) {
+            // The rows after a lost chunk can't be written either
+            for (CompletableFuture<T> pending : inFlight) {
+                pending.cancel(false);
+            }
+            inFlight.clear();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package beans;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Finished .xlsx reports kept in memory, so exporting the same period again,
+// say the same quarter under a new header, skips the queries, the tax split and
+// the row rendering. What is kept is everything but the header: the totals and
+// the XML of every sheet except Summary (see XlsxExporter.captureSheets()).
+// Keys include Database.getDataVersion(), so any change to the ledger makes
+// earlier entries unreachable; they are dropped at the next lookup. Entries
+// are evicted least recently used first to stay under maxBytes. Thread-safe.
+public final class ReportCache {
+
+    // A report's inputs other than its header text
+    public static final class Key {
+        private final long fromTimestamp;
+        private final long toTimestamp;
+        private final boolean analytics;
+        private final long dataVersion;
+
+        public Key(long fromTimestamp, long toTimestamp, boolean analytics, long dataVersion) {
+            this.fromTimestamp = fromTimestamp;
+            this.toTimestamp = toTimestamp;
+            this.analytics = analytics;
+            this.dataVersion = dataVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return fromTimestamp == k.fromTimestamp && toTimestamp == k.toTimestamp
+                    && analytics == k.analytics && dataVersion == k.dataVersion;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fromTimestamp, toTimestamp, analytics, dataVersion);
+        }
+    }
+
+    // One rendered report: the sheets in workbook order, as the UTF-8 bytes of their XML
+    public static final class Report {
+        private final List<String> sheetNames;
+        private final List<byte[]> sheets;
+        private final TaxCalculator.Accumulator invoiceTotals;
+        private final TaxCalculator.Accumulator incomeTotals;
+        private final long bytes;
+
+        Report(List<String> sheetNames, List<byte[]> sheets, TaxCalculator.Accumulator invoiceTotals,
+                TaxCalculator.Accumulator incomeTotals) {
+            this.sheetNames = sheetNames;
+            this.sheets = sheets;
+            this.invoiceTotals = invoiceTotals;
+            this.incomeTotals = incomeTotals;
+            long size = 0;
+            for (byte[] sheet : sheets) {
+                size += sheet.length;
+            }
+            this.bytes = size;
+        }
+
+        List<String> getSheetNames() { return sheetNames; }
+        List<byte[]> getSheets() { return sheets; }
+        TaxCalculator.Accumulator getInvoiceTotals() { return invoiceTotals; }
+        TaxCalculator.Accumulator getIncomeTotals() { return incomeTotals; }
+
+        public long getBytes() { return bytes; }
+
+        public int getRows() {
+            return (int) (invoiceTotals.getCount() + incomeTotals.getCount());
+        }
+    }
+
+    // An eighth of the heap, at most 256 MB
+    public static final long DEFAULT_MAX_BYTES = Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 8);
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Report> reports = new LinkedHashMap<>(16, 0.75f, true); // access order
+    private long bytes;
+
+    public ReportCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public ReportCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // Largest report worth rendering for the cache; a bigger one is exported without it
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    // The report for key, or null. Entries of older data versions are dropped on the way.
+    public synchronized Report get(Key key) {
+        for (Iterator<Map.Entry<Key, Report>> it = reports.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Key, Report> entry = it.next();
+            if (entry.getKey().dataVersion < key.dataVersion) {
+                bytes -= entry.getValue().getBytes();
+                it.remove();
+            }
+        }
+        return reports.get(key);
+    }
+
+    public synchronized void put(Key key, Report report) {
+        if (report.getBytes() > maxBytes) {
+            return;
+        }
+        Report old = reports.put(key, report);
+        if (old != null) {
+            bytes -= old.getBytes();
+        }
+        bytes += report.getBytes();
+        for (Iterator<Report> it = reports.values().iterator(); bytes > maxBytes && it.hasNext(); ) {
+            bytes -= it.next().getBytes();
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package beans;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+// The report header saved by "Save Info" on the Build Report tab, kept in
+// report_info.properties in the working directory. Command-line exports read
+// it from here to get the same header the GUI would put on the report.
+public class ReportInfo {
+
+    public static final String FILE_NAME = "report_info.properties";
+
+    // Property key, then the label it gets in the exported header, in header order
+    private static final String[][] FIELDS = {
+            { "company", "Company" },
+            { "address", "Address" },
+            { "contact", "Contact" },
+            { "phone", "Phone" },
+            { "email", "Email" },
+            { "reportTitle", "Report Title" },
+    };
+
+    // The header as ExcelExporter / XlsxExporter take it; blank if file doesn't exist
+    public static Map<String, String> load(File file) throws IOException {
+        Properties props = new Properties();
+        if (file.exists()) {
+            try (FileInputStream in = new FileInputStream(file)) {
+                props.load(in);
+            }
+        }
+        Map<String, String> headerInfo = new LinkedHashMap<>();
+        for (String[] field : FIELDS) {
+            headerInfo.put(field[1], props.getProperty(field[0], ""));
+        }
+        return headerInfo;
+    }
+}
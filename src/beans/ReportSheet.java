@@ -0,0 +1,39 @@
+package beans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A small extra sheet for a report, e.g. the LedgerAnalytics tables: a header
+// row, then rows of values. ReportWriter.addSheet() takes it and both writers
+// lay it out the same way: a String is a text cell, a Money a currency cell,
+// any other Number a plain number and null an empty cell.
+public final class ReportSheet {
+
+    private final String name;
+    private final String[] headers;
+    private final int[] columnWidths;
+    private final List<Object[]> rows = new ArrayList<>();
+
+    // columnWidths in characters, one per header
+    public ReportSheet(String name, String[] headers, int[] columnWidths) {
+        if (headers.length != columnWidths.length) {
+            throw new IllegalArgumentException("One width per column");
+        }
+        this.name = name;
+        this.headers = headers;
+        this.columnWidths = columnWidths;
+    }
+
+    public ReportSheet addRow(Object... values) {
+        if (values.length > headers.length) {
+            throw new IllegalArgumentException("Row has " + values.length + " values for " + headers.length + " columns");
+        }
+        rows.add(values);
+        return this;
+    }
+
+    public String getName() { return name; }
+    public String[] getHeaders() { return headers; }
+    public int[] getColumnWidths() { return columnWidths; }
+    public List<Object[]> getRows() { return rows; }
+}
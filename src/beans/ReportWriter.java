@@ -0,0 +1,51 @@
+package beans;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+// Receives report rows one at a time: every invoice first, then every income.
+// close() writes any extra sheets and the Summary sheet and finishes the file.
+public interface ReportWriter extends Closeable {
+
+    // Layout of the Invoices / Incomes sheets
+    String[] ENTRY_HEADERS = {"Vendor", "Category", "Issued Date", "Description", "Base Amount", "GST (5%)", "QST (9.975%)", "Total Amount", "Tax Included", "Non-Taxable"};
+    int[] ENTRY_COLUMN_WIDTHS = {
+            15, // Vendor
+            15, // Category
+            12, // Date
+            30, // Description
+            12, // Base Amount
+            12, // GST
+            12, // QST
+            14, // Total
+            12, // Tax Included
+            12  // Non-Taxable
+    };
+
+    // Picks the writer by extension: .xls keeps the legacy jxl writer
+    // (65,536 rows per sheet max), anything else is written as .xlsx
+    static ReportWriter open(File file, Map<String, String> headerInfo) throws IOException {
+        return open(file, headerInfo, null);
+    }
+
+    // With a rowExecutor, rows are prepared on it in chunks while the caller keeps
+    // writing (see ParallelRows); null prepares every row on the writing thread.
+    // The file is the same either way.
+    static ReportWriter open(File file, Map<String, String> headerInfo, Executor rowExecutor) throws IOException {
+        if (file.getName().toLowerCase().endsWith(".xls")) {
+            return new ExcelExporter(file, headerInfo, rowExecutor);
+        }
+        return new XlsxExporter(file, headerInfo, rowExecutor);
+    }
+
+    void writeInvoice(Invoice invoice) throws IOException;
+
+    void writeIncome(Income income) throws IOException;
+
+    // Adds a sheet after Invoices and Incomes, e.g. one of LedgerAnalytics.toSheets().
+    // It is written when the writer is closed, in the order added.
+    void addSheet(ReportSheet sheet) throws IOException;
+}
@@ -0,0 +1,133 @@
+package beans;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+// SQLite connection settings applied by Database right after it connects.
+// Loaded from storage.properties in the working directory (next to
+// report_info.properties); missing keys keep the defaults below.
+//
+// The defaults put the ledger in WAL mode: writers append to the -wal file
+// instead of locking the database, so report reads never wait for an insert
+// and inserts never wait for a report. synchronous=NORMAL only syncs at
+// checkpoints, which in WAL mode can lose the last commits on power loss but
+// never corrupts the file.
+public class StorageProfile {
+
+    public static final String FILE_NAME = "storage.properties";
+
+    private static final List<String> JOURNAL_MODES = Arrays.asList("DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+    private static final List<String> SYNCHRONOUS_LEVELS = Arrays.asList("OFF", "NORMAL", "FULL", "EXTRA");
+    private static final List<String> TEMP_STORES = Arrays.asList("DEFAULT", "FILE", "MEMORY");
+
+    private final String journalMode;
+    private final String synchronous;
+    private final long mmapSize; // bytes of the file mapped into memory, 0 disables
+    private final int cacheSize; // pages if positive, KiB if negative (SQLite's convention)
+    private final String tempStore;
+    private final int busyTimeout; // ms to wait for a lock before failing with SQLITE_BUSY
+
+    public StorageProfile(String journalMode, String synchronous, long mmapSize, int cacheSize, String tempStore,
+            int busyTimeout) {
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.mmapSize = mmapSize;
+        this.cacheSize = cacheSize;
+        this.tempStore = tempStore;
+        this.busyTimeout = busyTimeout;
+    }
+
+    // WAL, NORMAL sync, 256 MiB mmap, 64 MiB page cache, temp tables in memory
+    public static StorageProfile defaults() {
+        return new StorageProfile("WAL", "NORMAL", 256L * 1024 * 1024, -64 * 1024, "MEMORY", 5000);
+    }
+
+    // What a bare connection gets: rollback journal, full sync, no mmap, 2 MiB cache.
+    // Kept for benchmarks to compare against.
+    public static StorageProfile legacy() {
+        return new StorageProfile("DELETE", "FULL", 0, -2000, "DEFAULT", 3000);
+    }
+
+    // Reads storage.properties from the working directory, or the defaults if there is none
+    public static StorageProfile load() {
+        return load(new File(FILE_NAME));
+    }
+
+    // Unreadable files and bad values are reported and fall back to the defaults,
+    // so a typo in the profile never stops the books from opening.
+    public static StorageProfile load(File file) {
+        StorageProfile d = defaults();
+        if (!file.exists()) {
+            return d;
+        }
+
+        Properties props = new Properties();
+        try (FileInputStream in = new FileInputStream(file)) {
+            props.load(in);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return d;
+        }
+
+        return new StorageProfile(
+                choice(props, "journal_mode", JOURNAL_MODES, d.journalMode),
+                choice(props, "synchronous", SYNCHRONOUS_LEVELS, d.synchronous),
+                number(props, "mmap_size", d.mmapSize),
+                (int) number(props, "cache_size", d.cacheSize),
+                choice(props, "temp_store", TEMP_STORES, d.tempStore),
+                (int) number(props, "busy_timeout", d.busyTimeout));
+    }
+
+    // Values are validated against fixed lists or parsed as numbers, so they
+    // are safe to put in the PRAGMA text.
+    public void apply(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // First, so the journal_mode switch below waits for other connections' locks
+            stmt.execute("PRAGMA busy_timeout = " + busyTimeout);
+            stmt.execute("PRAGMA journal_mode = " + journalMode);
+            stmt.execute("PRAGMA synchronous = " + synchronous);
+            stmt.execute("PRAGMA cache_size = " + cacheSize);
+            stmt.execute("PRAGMA mmap_size = " + mmapSize);
+            stmt.execute("PRAGMA temp_store = " + tempStore);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "journal_mode=" + journalMode + ",synchronous=" + synchronous + ",mmap_size=" + mmapSize
+                + ",cache_size=" + cacheSize + ",temp_store=" + tempStore + ",busy_timeout=" + busyTimeout;
+    }
+
+    private static String choice(Properties props, String key, List<String> allowed, String fallback) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return fallback;
+        }
+        value = value.trim().toUpperCase();
+        if (!allowed.contains(value)) {
+            System.err.println(FILE_NAME + ": " + key + " must be one of " + allowed + ", using " + fallback);
+            return fallback;
+        }
+        return value;
+    }
+
+    private static long number(Properties props, String key, long fallback) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println(FILE_NAME + ": " + key + " is not a number, using " + fallback);
+            return fallback;
+        }
+    }
+}
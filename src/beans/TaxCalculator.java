@@ -0,0 +1,117 @@
+package beans;
+
+import java.math.BigInteger;
+
+// Splits ledger amounts into base / GST / QST cents for one rate table.
+// Everything that depends only on the rates is worked out once in the
+// constructor, so compute() is a few long multiplications and divisions
+// and allocates nothing; callers reuse one Breakdown and one Accumulator
+// for a whole export.
+public final class TaxCalculator {
+
+    // Rates are given in parts per RATE_SCALE, so 5_000 means 5%
+    public static final long RATE_SCALE = 100_000;
+
+    // GST 5%, QST 9.975% charged on base + GST
+    public static final TaxCalculator DEFAULT = new TaxCalculator(5_000, 9_975);
+
+    private final long gstRate;
+    private final long qstRate;
+
+    // Tax-included amounts: base = amount * includedNumerator / includedDenominator,
+    // i.e. amount / ((1 + GST) * (1 + QST)) as a reduced fraction so large amounts can't overflow
+    private final long includedNumerator;
+    private final long includedDenominator;
+
+    public TaxCalculator(long gstRate, long qstRate) {
+        if (gstRate < 0 || qstRate < 0) {
+            throw new IllegalArgumentException("Tax rates cannot be negative");
+        }
+        this.gstRate = gstRate;
+        this.qstRate = qstRate;
+
+        long numerator = RATE_SCALE * RATE_SCALE;
+        long denominator = (RATE_SCALE + gstRate) * (RATE_SCALE + qstRate);
+        long gcd = BigInteger.valueOf(numerator).gcd(BigInteger.valueOf(denominator)).longValue();
+        this.includedNumerator = numerator / gcd;
+        this.includedDenominator = denominator / gcd;
+    }
+
+    // Splits amountCents and stores the result in out.
+    // Rounding rules, all half away from zero to the cent:
+    //   GST = round(base * GST rate), QST = round((base + GST) * QST rate).
+    //   Tax-excluded: base is the amount as entered.
+    //   Tax-included: base = round(amount / ((1 + GST) * (1 + QST))), the taxes are
+    //   computed from it, then the base absorbs any leftover cent so that
+    //   base + GST + QST always equals the amount on the receipt.
+    //   Non-taxable: base is the amount, no tax.
+    public void compute(long amountCents, boolean taxIncluded, boolean nonTaxable, Breakdown out) {
+        if (nonTaxable) {
+            out.set(amountCents, 0, 0);
+            return;
+        }
+        long base = taxIncluded
+                ? Money.divideRounded(amountCents * includedNumerator, includedDenominator)
+                : amountCents;
+        long gst = Money.divideRounded(base * gstRate, RATE_SCALE);
+        long qst = Money.divideRounded((base + gst) * qstRate, RATE_SCALE);
+        if (taxIncluded) {
+            base = amountCents - gst - qst;
+        }
+        out.set(base, gst, qst);
+    }
+
+    // Computes the row into out and adds it to totals, so each row is split exactly once
+    public void compute(long amountCents, boolean taxIncluded, boolean nonTaxable, Breakdown out, Accumulator totals) {
+        compute(amountCents, taxIncluded, nonTaxable, out);
+        totals.add(out, nonTaxable);
+    }
+
+    // One row's split, in cents. Mutable so a single instance can be reused.
+    public static final class Breakdown {
+        long base, gst, qst;
+
+        void set(long base, long gst, long qst) {
+            this.base = base;
+            this.gst = gst;
+            this.qst = qst;
+        }
+
+        public long getBase() { return base; }
+        public long getGst() { return gst; }
+        public long getQst() { return qst; }
+        public long getTotal() { return base + gst + qst; }
+    }
+
+    // Running totals in cents
+    public static final class Accumulator {
+        long base, gst, qst, total, nonTaxable;
+        long count;
+
+        public void add(Breakdown t, boolean isNonTaxable) {
+            base += t.base;
+            gst += t.gst;
+            qst += t.qst;
+            total += t.base + t.gst + t.qst;
+            if (isNonTaxable) nonTaxable += t.base;
+            count++;
+        }
+
+        // Folds another accumulator in, e.g. one filled on another thread
+        public void add(Accumulator other) {
+            base += other.base;
+            gst += other.gst;
+            qst += other.qst;
+            total += other.total;
+            nonTaxable += other.nonTaxable;
+            count += other.count;
+        }
+
+        public long getBase() { return base; }
+        public long getGst() { return gst; }
+        public long getQst() { return qst; }
+        public long getTotal() { return total; }
+        public long getNonTaxable() { return nonTaxable; }
+        public long getCount() { return count; }
+    }
+}
@@ -0,0 +1,608 @@
+package beans;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Streaming OOXML (.xlsx) version of the ExcelExporter report.
+// Rows are written straight into the zip stream as they are added, so memory
+// stays flat however many entries the period holds. Sheets are written in
+// the order Invoices, Incomes, then Summary (once the totals are known);
+// workbook.xml still lists Summary first so Excel opens on it.
+public class XlsxExporter implements ReportWriter {
+
+    // Hard row limit of an .xlsx worksheet; longer lists continue on "Invoices (2)" etc.
+    private static final int MAX_ROWS = 1_048_576;
+    private static final int ENTRIES_PER_SHEET = MAX_ROWS - 1; // below the header row
+
+    // cellXfs indexes in styles.xml
+    private static final int STYLE_HEADER = 1;
+    private static final int STYLE_MONEY = 2;
+    private static final int STYLE_MONEY_BOLD = 3;
+    private static final int STYLE_NORMAL = 4;
+    private static final int STYLE_DATE = 5;
+
+    private static final String STYLES_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+            + "<numFmts count=\"2\"><numFmt numFmtId=\"164\" formatCode=\"&quot;$&quot;#,##0.00\"/>"
+            + "<numFmt numFmtId=\"165\" formatCode=\"yyyy-mm-dd\"/></numFmts>"
+            + "<fonts count=\"3\">"
+            + "<font><sz val=\"10\"/><name val=\"Arial\"/></font>"
+            + "<font><b/><sz val=\"11\"/><name val=\"Arial\"/></font>"
+            + "<font><b/><sz val=\"10\"/><name val=\"Arial\"/></font>"
+            + "</fonts>"
+            + "<fills count=\"3\">"
+            + "<fill><patternFill patternType=\"none\"/></fill>"
+            + "<fill><patternFill patternType=\"gray125\"/></fill>"
+            + "<fill><patternFill patternType=\"solid\"><fgColor rgb=\"FFC0C0C0\"/><bgColor indexed=\"64\"/></patternFill></fill>"
+            + "</fills>"
+            + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+            + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+            + "<cellXfs count=\"6\">"
+            + "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+            + "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"2\" borderId=\"0\" xfId=\"0\" applyFont=\"1\" applyFill=\"1\" applyAlignment=\"1\"><alignment horizontal=\"center\" wrapText=\"1\"/></xf>"
+            + "<xf numFmtId=\"164\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\" applyAlignment=\"1\"><alignment horizontal=\"right\"/></xf>"
+            + "<xf numFmtId=\"164\" fontId=\"2\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\" applyFont=\"1\" applyAlignment=\"1\"><alignment horizontal=\"right\"/></xf>"
+            + "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyAlignment=\"1\"><alignment wrapText=\"1\"/></xf>"
+            + "<xf numFmtId=\"165\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\" applyAlignment=\"1\"><alignment horizontal=\"left\"/></xf>"
+            + "</cellXfs>"
+            + "</styleSheet>";
+
+    private final ZipOutputStream zip;
+    private final CopyingStream copying; // between out and zip, see captureSheets()
+    private final Writer out;
+    private final Map<String, String> headerInfo;
+    private final StringBuilder rowXml = new StringBuilder(1024); // the row being written, sent to out at endRow()
+
+    // Sheet names in zip order; sheetN.xml matches index N - 1
+    private final List<String> sheetNames = new ArrayList<>();
+    private final List<ReportSheet> extraSheets = new ArrayList<>();
+
+    private final TaxCalculator taxes = TaxCalculator.DEFAULT;
+    private final TaxCalculator.Accumulator invoiceTotals = new TaxCalculator.Accumulator();
+    private final TaxCalculator.Accumulator incomeTotals = new TaxCalculator.Accumulator();
+    private final TaxCalculator.Breakdown breakdown = new TaxCalculator.Breakdown(); // reused for every row
+
+    private String currentSection; // "Invoices" or "Incomes" while an entry sheet is open
+    private int sectionPart;
+    private int currentRow; // 1-based index of the last row written to the open sheet
+    private boolean invoicesWritten, incomesWritten;
+    private boolean replayed;
+    private boolean closed;
+
+    // Sheets kept by captureSheets(), in zip order
+    private final List<String> capturedNames = new ArrayList<>();
+    private final List<byte[]> capturedSheets = new ArrayList<>();
+
+    // With a row executor: rows are queued in chunks, see queue()
+    private final ParallelRows<Chunk> chunks;
+    private List<ExcelExporter.FinancialEntry> pending = new ArrayList<>();
+    private String queuedSection; // section of the rows queued last
+    private int queuedEntries; // rows queued for it so far
+
+    public XlsxExporter(File file, Map<String, String> headerInfo) throws IOException {
+        this(file, headerInfo, null);
+    }
+
+    // Rows are prepared on rowExecutor if there is one, see ReportWriter.open()
+    public XlsxExporter(File file, Map<String, String> headerInfo, Executor rowExecutor) throws IOException {
+        this.zip = new ZipOutputStream(new FileOutputStream(file));
+        this.copying = new CopyingStream(zip);
+        this.out = new BufferedWriter(new OutputStreamWriter(copying, StandardCharsets.UTF_8), 64 * 1024);
+        this.headerInfo = headerInfo;
+        this.chunks = rowExecutor != null ? new ParallelRows<>(rowExecutor, this::writeChunk) : null;
+    }
+
+    // Keeps a copy of every sheet but Summary as it goes into the zip, for
+    // capturedReport(). If they come to more than maxBytes in all the copy is
+    // dropped and the export carries on without it. Call before the first row.
+    public void captureSheets(long maxBytes) {
+        copying.budget = maxBytes;
+    }
+
+    // What captureSheets() kept, ready for ReportCache; null if nothing was
+    // kept or it went over budget. Only complete once the writer is closed.
+    public ReportCache.Report capturedReport() {
+        if (copying.budget < 0 || capturedSheets.isEmpty()) {
+            return null;
+        }
+        TaxCalculator.Accumulator invoices = new TaxCalculator.Accumulator();
+        invoices.add(invoiceTotals);
+        TaxCalculator.Accumulator incomes = new TaxCalculator.Accumulator();
+        incomes.add(incomeTotals);
+        return new ReportCache.Report(new ArrayList<>(capturedNames), new ArrayList<>(capturedSheets), invoices, incomes);
+    }
+
+    // Writes the sheets of a report captured earlier in place of any rows, so
+    // only the Summary sheet (with this writer's header) and the workbook parts
+    // are left to build on close(). Nothing else may be written.
+    public void replay(ReportCache.Report report) throws IOException {
+        if (invoicesWritten || incomesWritten || queuedSection != null || !extraSheets.isEmpty()) {
+            throw new IllegalStateException("replay() needs a writer with nothing written yet");
+        }
+        for (int i = 0; i < report.getSheets().size(); i++) {
+            sheetNames.add(report.getSheetNames().get(i));
+            zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetNames.size() + ".xml"));
+            zip.write(report.getSheets().get(i));
+            zip.closeEntry();
+        }
+        invoiceTotals.add(report.getInvoiceTotals());
+        incomeTotals.add(report.getIncomeTotals());
+        invoicesWritten = true;
+        incomesWritten = true;
+        replayed = true;
+    }
+
+    // Invoices must all be written before the first income
+    @Override
+    public void writeInvoice(Invoice invoice) throws IOException {
+        if (incomesWritten || "Incomes".equals(queuedSection)) {
+            throw new IllegalStateException("Invoices must be written before incomes");
+        }
+        if (chunks != null) {
+            queue("Invoices", invoice);
+            return;
+        }
+        if (!invoicesWritten) {
+            startSection("Invoices");
+            invoicesWritten = true;
+        }
+        writeEntry(invoice, invoiceTotals);
+    }
+
+    @Override
+    public void writeIncome(Income income) throws IOException {
+        if (chunks != null) {
+            queue("Incomes", income);
+            return;
+        }
+        if (!incomesWritten) {
+            ensureInvoicesSheet();
+            endSheet();
+            startSection("Incomes");
+            incomesWritten = true;
+        }
+        writeEntry(income, incomeTotals);
+    }
+
+    @Override
+    public void addSheet(ReportSheet sheet) {
+        if (replayed) {
+            throw new IllegalStateException("A replayed report already has its sheets");
+        }
+        extraSheets.add(sheet);
+    }
+
+    // Collects rows into chunks that are split and turned into sheet XML on the
+    // row executor, invoices and incomes alike; writeChunk() then only copies the
+    // XML into the zip, on this thread. Chunks never straddle a sheet boundary,
+    // so each one's row numbers are known up front.
+    private void queue(String section, ExcelExporter.FinancialEntry entry) throws IOException {
+        if (!section.equals(queuedSection)) {
+            submitPending();
+            queuedSection = section;
+            queuedEntries = 0;
+        }
+        pending.add(entry);
+        queuedEntries++;
+        if (pending.size() == ParallelRows.CHUNK_ROWS || queuedEntries % ENTRIES_PER_SHEET == 0) {
+            submitPending();
+        }
+    }
+
+    private void submitPending() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<ExcelExporter.FinancialEntry> entries = pending;
+        String section = queuedSection;
+        int first = queuedEntries - entries.size();
+        pending = new ArrayList<>();
+        chunks.submit(() -> new Chunk(section, entries, first));
+    }
+
+    private void writeChunk(Chunk chunk) throws IOException {
+        if (chunk.section.equals("Invoices")) {
+            ensureInvoicesSheet();
+            invoiceTotals.add(chunk.totals);
+        } else {
+            if (!incomesWritten) {
+                ensureInvoicesSheet();
+                endSheet();
+                startSection("Incomes");
+                incomesWritten = true;
+            }
+            incomeTotals.add(chunk.totals);
+        }
+        if (currentRow == MAX_ROWS) {
+            endSheet();
+            sectionPart++;
+            startEntrySheet(currentSection + " (" + sectionPart + ")");
+        }
+        out.write(chunk.xml);
+        currentRow += chunk.rows;
+    }
+
+    // Consecutive rows of one section as sheet XML, with their totals; first is the
+    // section index of the first one
+    private static final class Chunk {
+        final String section;
+        final String xml;
+        final TaxCalculator.Accumulator totals = new TaxCalculator.Accumulator();
+        final int rows;
+
+        Chunk(String section, List<ExcelExporter.FinancialEntry> entries, int first) {
+            this.section = section;
+            this.rows = entries.size();
+            StringBuilder sb = new StringBuilder(rows * 640);
+            TaxCalculator.Breakdown tb = new TaxCalculator.Breakdown();
+            for (int i = 0; i < rows; i++) {
+                ExcelExporter.FinancialEntry item = entries.get(i);
+                TaxCalculator.DEFAULT.compute(item.getAmountCents(), item.isTaxIncluded(), item.isNonTaxable(), tb, totals);
+                appendEntry(sb, (first + i) % ENTRIES_PER_SHEET + 2, item, tb);
+            }
+            xml = sb.toString();
+        }
+    }
+
+    // Finishes the entry sheets, then writes the Summary sheet and the workbook parts
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            if (chunks != null) {
+                submitPending();
+                chunks.finish();
+            }
+            if (!replayed) {
+                ensureInvoicesSheet();
+                if (!incomesWritten) {
+                    endSheet();
+                    startSection("Incomes");
+                    incomesWritten = true;
+                }
+                endSheet();
+
+                for (ReportSheet extra : extraSheets) {
+                    writeExtraSheet(extra);
+                }
+            }
+            writeSummarySheet();
+            writeWorkbookParts();
+            out.flush();
+        } finally {
+            zip.close();
+        }
+    }
+
+    private void ensureInvoicesSheet() throws IOException {
+        if (!invoicesWritten) {
+            startSection("Invoices");
+            invoicesWritten = true;
+        }
+    }
+
+    // --- Entry sheets ---
+
+    private void startSection(String name) throws IOException {
+        currentSection = name;
+        sectionPart = 1;
+        startEntrySheet(name);
+    }
+
+    private void startEntrySheet(String name) throws IOException {
+        startSheet(name, ENTRY_COLUMN_WIDTHS);
+        startRow();
+        for (String header : ENTRY_HEADERS) {
+            stringCell(header, STYLE_HEADER);
+        }
+        endRow();
+    }
+
+    private void writeEntry(ExcelExporter.FinancialEntry item, TaxCalculator.Accumulator totals) throws IOException {
+        if (currentRow == MAX_ROWS) {
+            endSheet();
+            sectionPart++;
+            startEntrySheet(currentSection + " (" + sectionPart + ")");
+        }
+
+        TaxCalculator.Breakdown tb = breakdown;
+        taxes.compute(item.getAmountCents(), item.isTaxIncluded(), item.isNonTaxable(), tb, totals);
+
+        currentRow++;
+        appendEntry(rowXml, currentRow, item, tb);
+        out.append(rowXml);
+        rowXml.setLength(0);
+    }
+
+    // One whole entry row; shared by writeEntry() and the queued chunks
+    private static void appendEntry(StringBuilder xml, int rowNumber, ExcelExporter.FinancialEntry item, TaxCalculator.Breakdown tb) {
+        xml.append("<row r=\"").append(rowNumber).append("\">");
+        stringCell(xml, item.getParty(), STYLE_NORMAL);
+        stringCell(xml, item.getCategory(), STYLE_NORMAL);
+        numberCell(xml, DayFormat.excelSerial(item.getIssuedDate()), STYLE_DATE);
+        stringCell(xml, item.getDescription(), STYLE_NORMAL);
+        moneyCell(xml, tb.getBase(), STYLE_MONEY);
+        moneyCell(xml, tb.getGst(), STYLE_MONEY);
+        moneyCell(xml, tb.getQst(), STYLE_MONEY);
+        moneyCell(xml, tb.getTotal(), STYLE_MONEY);
+        stringCell(xml, item.isTaxIncluded() ? "Yes" : "No", STYLE_NORMAL);
+        stringCell(xml, item.isNonTaxable() ? "Yes" : "No", STYLE_NORMAL);
+        xml.append("</row>");
+    }
+
+    // --- Extra sheets (same layout as ExcelExporter) ---
+
+    private void writeExtraSheet(ReportSheet extra) throws IOException {
+        startSheet(extra.getName(), extra.getColumnWidths());
+        startRow();
+        for (String header : extra.getHeaders()) {
+            stringCell(header, STYLE_HEADER);
+        }
+        endRow();
+        for (Object[] values : extra.getRows()) {
+            startRow();
+            for (Object value : values) {
+                if (value instanceof Money) {
+                    moneyCell(((Money) value).getCents(), STYLE_MONEY);
+                } else if (value instanceof Number) {
+                    numberCell(rowXml, ((Number) value).longValue(), STYLE_NORMAL);
+                } else if (value != null) {
+                    stringCell(value.toString(), STYLE_NORMAL);
+                } else {
+                    rowXml.append("<c/>"); // cells carry no reference, so a gap still needs one
+                }
+            }
+            endRow();
+        }
+        endSheet();
+    }
+
+    // --- Summary sheet (same layout as ExcelExporter) ---
+
+    private void writeSummarySheet() throws IOException {
+        startSheet("Summary", new int[] { 20, 30 });
+        copying.stopCopy(); // the header changes from one export to the next
+
+        startRow();
+        stringCell("Quarterly Financial Report Summary", STYLE_HEADER);
+        endRow();
+
+        for (Map.Entry<String, String> entry : headerInfo.entrySet()) {
+            startRow();
+            stringCell(entry.getKey(), STYLE_HEADER);
+            stringCell(entry.getValue(), STYLE_NORMAL);
+            endRow();
+        }
+
+        currentRow++; // blank row
+        startRow();
+        stringCell("INVOICE TOTALS", STYLE_HEADER);
+        endRow();
+        writeTotals(invoiceTotals, "Invoice");
+
+        currentRow++;
+        startRow();
+        stringCell("INCOME TOTALS", STYLE_HEADER);
+        endRow();
+        writeTotals(incomeTotals, "Income");
+
+        out.write("</sheetData><mergeCells count=\"1\"><mergeCell ref=\"A1:D1\"/></mergeCells></worksheet>");
+        out.flush();
+        zip.closeEntry();
+    }
+
+    private void writeTotals(TaxCalculator.Accumulator totals, String label) throws IOException {
+        totalRow(label + " Base Total", totals.getBase());
+        totalRow(label + " GST Total", totals.getGst());
+        totalRow(label + " QST Total", totals.getQst());
+        totalRow(label + " Grand Total", totals.getTotal());
+        totalRow(label + " Non-Taxable Total", totals.getNonTaxable());
+    }
+
+    private void totalRow(String label, long cents) throws IOException {
+        startRow();
+        stringCell(label, STYLE_HEADER);
+        moneyCell(cents, STYLE_MONEY_BOLD);
+        endRow();
+    }
+
+    // --- Low level sheet XML ---
+
+    private void startSheet(String name, int[] columnWidths) throws IOException {
+        sheetNames.add(name);
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetNames.size() + ".xml"));
+        copying.startCopy();
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><cols>");
+        for (int i = 0; i < columnWidths.length; i++) {
+            out.write("<col min=\"" + (i + 1) + "\" max=\"" + (i + 1) + "\" width=\"" + columnWidths[i] + "\" customWidth=\"1\"/>");
+        }
+        out.write("</cols><sheetData>");
+        currentRow = 0;
+    }
+
+    private void endSheet() throws IOException {
+        out.write("</sheetData></worksheet>");
+        out.flush();
+        byte[] copy = copying.stopCopy();
+        if (copy != null) {
+            capturedNames.add(sheetNames.get(sheetNames.size() - 1));
+            capturedSheets.add(copy);
+        }
+        zip.closeEntry();
+    }
+
+    // Header and summary rows are built in rowXml, then written in one go
+    private void startRow() {
+        currentRow++;
+        rowXml.append("<row r=\"").append(currentRow).append("\">");
+    }
+
+    private void endRow() throws IOException {
+        rowXml.append("</row>");
+        out.append(rowXml);
+        rowXml.setLength(0);
+    }
+
+    private void stringCell(String value, int style) {
+        stringCell(rowXml, value, style);
+    }
+
+    private void moneyCell(long cents, int style) {
+        moneyCell(rowXml, cents, style);
+    }
+
+    private static void stringCell(StringBuilder xml, String value, int style) {
+        xml.append("<c s=\"").append(style).append("\" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+        if (value != null) {
+            appendEscaped(xml, value);
+        }
+        xml.append("</t></is></c>");
+    }
+
+    // Dates go in as their serial day number with STYLE_DATE, so Excel sorts and filters them as dates
+    private static void numberCell(StringBuilder xml, long value, int style) {
+        xml.append("<c s=\"").append(style).append("\"><v>").append(value).append("</v></c>");
+    }
+
+    // Written as an exact decimal ("1234.56"), never through a double
+    private static void moneyCell(StringBuilder xml, long cents, int style) {
+        xml.append("<c s=\"").append(style).append("\"><v>").append(Money.format(cents)).append("</v></c>");
+    }
+
+    private static void appendEscaped(StringBuilder xml, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&': xml.append("&amp;"); break;
+                case '<': xml.append("&lt;"); break;
+                case '>': xml.append("&gt;"); break;
+                case '"': xml.append("&quot;"); break;
+                default:
+                    // Control characters other than tab / newline are not allowed in XML 1.0
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        xml.append(c);
+                    }
+            }
+        }
+    }
+
+    // --- Package parts ---
+
+    private void writeWorkbookParts() throws IOException {
+        // Summary was written last but goes first in the tab order
+        int summaryIndex = sheetNames.size();
+        List<Integer> tabOrder = new ArrayList<>();
+        tabOrder.add(summaryIndex);
+        for (int i = 1; i < summaryIndex; i++) tabOrder.add(i);
+
+        StringBuilder contentTypes = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+                + "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+        StringBuilder workbook = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" "
+                + "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\"><sheets>");
+        StringBuilder workbookRels = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                + "<Relationship Id=\"rIdStyles\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>");
+
+        for (int i = 1; i <= sheetNames.size(); i++) {
+            contentTypes.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+                    .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+            workbookRels.append("<Relationship Id=\"rId").append(i)
+                    .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet")
+                    .append(i).append(".xml\"/>");
+        }
+        int sheetId = 1;
+        for (int i : tabOrder) {
+            workbook.append("<sheet name=\"").append(sheetNames.get(i - 1)).append("\" sheetId=\"").append(sheetId++)
+                    .append("\" r:id=\"rId").append(i).append("\"/>");
+        }
+        contentTypes.append("</Types>");
+        workbook.append("</sheets></workbook>");
+        workbookRels.append("</Relationships>");
+
+        writePart("[Content_Types].xml", contentTypes.toString());
+        writePart("_rels/.rels", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                + "</Relationships>");
+        writePart("xl/workbook.xml", workbook.toString());
+        writePart("xl/_rels/workbook.xml.rels", workbookRels.toString());
+        writePart("xl/styles.xml", STYLES_XML);
+    }
+
+    // Passes the encoded sheet XML on to the zip and, between startCopy() and
+    // stopCopy(), keeps a copy. budget is what captureSheets() still allows:
+    // 0 when not capturing, -1 once it ran out.
+    private static final class CopyingStream extends FilterOutputStream {
+        long budget;
+        private ByteArrayOutputStream copy;
+
+        CopyingStream(OutputStream zip) {
+            super(zip);
+        }
+
+        void startCopy() {
+            copy = budget > 0 ? new ByteArrayOutputStream(64 * 1024) : null;
+        }
+
+        // The bytes since startCopy(), or null if nothing was being kept
+        byte[] stopCopy() {
+            byte[] bytes = copy != null ? copy.toByteArray() : null;
+            copy = null;
+            return bytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+                spend(1);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                spend(len);
+            }
+        }
+
+        private void spend(long bytes) {
+            budget -= bytes;
+            if (budget <= 0) { // with nothing left, the next sheet couldn't be kept either
+                budget = -1;
+                copy = null;
+            }
+        }
+    }
+
+    private void writePart(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        out.flush();
+        zip.closeEntry();
+    }
+}